@@ -0,0 +1,131 @@
+-- Full-text search benchmark: 10,000 users x 20 sessions x 50 messages = 10M messages, plus one
+-- heavy user with 100,000 messages.
+--
+-- Run against an empty database whose schema was created by starting the service once, e.g.
+--   createdb rag_chat_bench && DB_NAME=rag_chat_bench java -jar target/rag-chat-service-1.0.0.jar
+--   psql -d rag_chat_bench -f benchmarks/search-benchmark.sql
+--
+-- Message text is 12 words drawn from a skewed vocabulary, so common terms ("database",
+-- "model") match a large share of all rows while rare ones match a few per user. The EXPLAIN
+-- statements at the end run the same SQL as ChatMessageRepository.search / searchAfter.
+
+-- ---------------------------------------------------------------------------------------------
+-- Data
+-- ---------------------------------------------------------------------------------------------
+
+DROP INDEX IF EXISTS idx_chat_messages_content_tsv;
+
+CREATE TEMP TABLE vocabulary AS
+SELECT string_to_array(
+    'database model vector query index embedding prompt token retrieval context search answer '
+    'document chunk score latency cache memory session user question summary agent tool call '
+    'result error timeout retry batch stream schema table column partition replica primary '
+    'network request response header payload json parser tokenizer encoder decoder layer '
+    'attention weight gradient training inference deployment cluster node shard queue worker '
+    'thread lock transaction commit rollback snapshot backup restore migration version release '
+    'feature config secret key tenant quota limit metric trace span log alert dashboard report '
+    'invoice customer order product price discount shipping warehouse inventory supplier '
+    'contract policy compliance audit review approval budget forecast revenue margin growth '
+    'hnsw ivfflat pgvector faiss bm25 reranker colbert splade hyde raptor graphrag lora qlora '
+    'quantization distillation pruning sparsity mixture expert router gating softmax logits',
+    ' ') AS words;
+
+INSERT INTO chat_sessions (id, user_id, title, favorite, created_at, updated_at)
+SELECT gen_random_uuid(),
+       'bench-' || (g % 10000),
+       initcap(v.words[1 + floor(power(random(), 2) * array_length(v.words, 1))::int]) || ' ' ||
+       v.words[1 + floor(power(random(), 2) * array_length(v.words, 1))::int] || ' notes',
+       false,
+       now() - interval '365 days' + (g % 365) * interval '1 day',
+       now()
+FROM generate_series(1, 200000) g, vocabulary v;
+
+INSERT INTO chat_messages (id, session_id, sender, content, context, created_at)
+SELECT gen_random_uuid(),
+       s.id,
+       CASE WHEN m % 2 = 0 THEN 'USER' ELSE 'ASSISTANT' END,
+       array_to_string(ARRAY[
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int]], ' '),
+       NULL,
+       s.created_at + m * interval '1 minute'
+FROM chat_sessions s, generate_series(1, 50) m, vocabulary v
+WHERE s.user_id LIKE 'bench-%';
+
+-- One heavy user with 100,000 messages (2,000 sessions), where the GIN index pays off
+INSERT INTO chat_sessions (id, user_id, title, favorite, created_at, updated_at)
+SELECT gen_random_uuid(), 'bench-heavy', 'Heavy session ' || g, false,
+       now() - interval '365 days' + (g % 365) * interval '1 day', now()
+FROM generate_series(1, 2000) g;
+
+INSERT INTO chat_messages (id, session_id, sender, content, context, created_at)
+SELECT gen_random_uuid(),
+       s.id,
+       CASE WHEN m % 2 = 0 THEN 'USER' ELSE 'ASSISTANT' END,
+       array_to_string(ARRAY[
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(power(random(), 3) * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int],
+           v.words[1 + floor(random() * array_length(v.words, 1))::int]], ' '),
+       NULL,
+       s.created_at + m * interval '1 minute'
+FROM chat_sessions s, generate_series(1, 50) m, vocabulary v
+WHERE s.user_id = 'bench-heavy';
+
+SET maintenance_work_mem = '512MB';
+CREATE INDEX IF NOT EXISTS idx_chat_messages_content_tsv ON chat_messages USING GIN (content_tsv);
+ANALYZE chat_sessions;
+ANALYZE chat_messages;
+
+SELECT count(*) AS messages, pg_size_pretty(pg_total_relation_size('chat_messages')) AS total_size,
+       pg_size_pretty(pg_relation_size('idx_chat_messages_content_tsv')) AS gin_size
+FROM chat_messages;
+
+-- ---------------------------------------------------------------------------------------------
+-- Queries (first page, limit 20 + 1). Common term, rare term, phrase, and a term nobody uses.
+-- ---------------------------------------------------------------------------------------------
+
+PREPARE search_page(text, text) AS
+WITH hits AS (
+    SELECT 'MESSAGE' AS type, m.id, m.session_id, m.created_at,
+           ts_rank(m.content_tsv, websearch_to_tsquery('english', $2)) AS rank
+    FROM chat_messages m
+    JOIN chat_sessions s ON s.id = m.session_id
+    WHERE s.user_id = $1
+      AND m.content_tsv @@ websearch_to_tsquery('english', $2)
+    UNION ALL
+    SELECT 'SESSION', s.id, s.id, s.created_at,
+           ts_rank(to_tsvector('english', s.title), websearch_to_tsquery('english', $2))
+    FROM chat_sessions s
+    WHERE s.user_id = $1
+      AND to_tsvector('english', s.title) @@ websearch_to_tsquery('english', $2)
+),
+page AS (SELECT * FROM hits ORDER BY rank DESC, id LIMIT 21)
+SELECT p.type, p.id, p.session_id, s.title, p.created_at, p.rank,
+       ts_headline('english', coalesce(m.content, s.title), websearch_to_tsquery('english', $2),
+                   'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=20, MinWords=5')
+FROM page p
+JOIN chat_sessions s ON s.id = p.session_id
+LEFT JOIN chat_messages m ON p.type = 'MESSAGE' AND m.id = p.id
+ORDER BY p.rank DESC, p.id;
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-42', 'database');
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-42', 'colbert');
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-42', '"vector database"');
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-42', 'kubernetes');
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-heavy', 'database');
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-heavy', 'colbert');
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE search_page('bench-heavy', 'colbert reranker');
@@ -0,0 +1,88 @@
+package com.ragchat.api;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ragchat.api.dto.ChatMessageResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Response body of GET /sessions/{id}/messages, written the way the message converter does: straight
+// to the response stream
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PageSerializationBenchmark {
+
+    @Param({"20", "100"})
+    private int size;
+
+    // Bytes of retrieved context per message; 0 is a page requested without includeContext
+    @Param({"0", "2048"})
+    private int contextBytes;
+
+    private ObjectWriter writer;
+    private Page<ChatMessageResponse> page;
+
+    @Setup
+    public void setUp() {
+        // Same settings as the ObjectMapper Spring Boot configures for the application
+        writer = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writerFor(Page.class);
+
+        String context = contextBytes == 0 ? null : context(contextBytes);
+        OffsetDateTime createdAt = OffsetDateTime.now().minusHours(1);
+        List<ChatMessageResponse> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ChatMessageResponse message = new ChatMessageResponse();
+            message.setId(UUID.randomUUID());
+            message.setSender(i % 2 == 0 ? "USER" : "ASSISTANT");
+            message.setContent("Message " + i + " of the conversation about the quarterly report.");
+            message.setContext(context);
+            message.setCreatedAt(createdAt.plusSeconds(i));
+            messages.add(message);
+        }
+        page = new PageImpl<>(messages, PageRequest.of(0, size), 10_000);
+    }
+
+    @Benchmark
+    public void writePage() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), page);
+    }
+
+    private static String context(int bytes) {
+        StringBuilder json = new StringBuilder("{\"documents\":[");
+        for (int i = 0; json.length() < bytes; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"id\":\"doc-").append(i)
+                    .append("\",\"score\":0.8").append(i % 10)
+                    .append(",\"text\":\"Revenue by region for the quarter, EMEA up 12 percent.\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
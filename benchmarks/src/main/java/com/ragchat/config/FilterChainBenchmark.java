@@ -0,0 +1,143 @@
+package com.ragchat.config;
+
+import com.ragchat.domain.ApiKey;
+import com.ragchat.repository.ApiKeyRepository;
+import com.ragchat.service.ApiKeyRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// ApiKeyAuthFilter followed by RateLimitingFilter, as every /api request runs them, from 8 threads.
+// With keys = 1 all threads hit the same rate-limit bucket (one busy tenant); with keys = 64 they
+// spread over separate buckets and only share the bucket cache.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class FilterChainBenchmark {
+
+    @Param({"1", "64"})
+    private int keys;
+
+    private ApiKeyAuthFilter authFilter;
+    private RateLimitingFilter rateLimitingFilter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Setup
+    public void setUp() {
+        List<ApiKey> apiKeys = new ArrayList<>(keys);
+        for (int i = 0; i < keys; i++) {
+            ApiKey apiKey = new ApiKey();
+            apiKey.setId(UUID.randomUUID());
+            apiKey.setKeyHash(sha256(key(i)));
+            apiKey.setTenantId("tenant-" + i);
+            apiKey.setName("bench-" + i);
+            apiKey.setScopes("read,write");
+            apiKey.setTier("standard");
+            apiKey.setEnabled(true);
+            apiKeys.add(apiKey);
+        }
+        // The limit is high enough that no request is refused during a run; see tearDown
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limiting.tiers.standard", String.valueOf(Integer.MAX_VALUE));
+        ApiKeyRegistry registry = new ApiKeyRegistry(repository(apiKeys), environment, "", "default", 60);
+
+        meterRegistry = new SimpleMeterRegistry();
+        authFilter = new ApiKeyAuthFilter(registry, "X-API-KEY");
+        rateLimitingFilter = new RateLimitingFilter(100_000, Duration.ofMinutes(10), 1000, meterRegistry,
+                new LocalBucketFactory());
+    }
+
+    @TearDown
+    public void tearDown() {
+        double rejected = meterRegistry.counter("rate.limit.rejected").count();
+        if (rejected > 0) {
+            throw new IllegalStateException(rejected + " requests were rate limited; results are not comparable");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+        FilterChain chain;
+
+        @Setup
+        public void setUp(FilterChainBenchmark benchmark, ThreadParams threadParams) {
+            request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+            request.addParameter("userId", "user-123");
+            request.addHeader("X-API-KEY", key(threadParams.getThreadIndex() % benchmark.keys));
+            response = new MockHttpServletResponse();
+            FilterChain controller = (req, res) -> {
+            };
+            chain = (req, res) -> benchmark.rateLimitingFilter.doFilter(req, res, controller);
+        }
+    }
+
+    @Benchmark
+    public int authenticateAndRateLimit(Caller caller) throws ServletException, IOException {
+        try {
+            authFilter.doFilter(caller.request, caller.response, caller.chain);
+            return caller.response.getStatus();
+        } finally {
+            // Done by Spring Security's SecurityContextHolderFilter at the end of every request
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static String key(int index) {
+        return "bench-key-" + index;
+    }
+
+    private static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Only findByEnabledTrue is called, when the registry loads its snapshot
+    private static ApiKeyRepository repository(List<ApiKey> apiKeys) {
+        return (ApiKeyRepository) Proxy.newProxyInstance(ApiKeyRepository.class.getClassLoader(),
+                new Class<?>[]{ApiKeyRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findByEnabledTrue")) {
+                        return apiKeys;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
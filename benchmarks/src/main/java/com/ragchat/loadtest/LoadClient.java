@@ -0,0 +1,169 @@
+package com.ragchat.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// One simulated client: a user who opens sessions, appends to them, reads their tail and lists them.
+// Latencies are recorded in nanoseconds into histograms owned by this client, merged after the run.
+final class LoadClient implements Runnable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // Sessions a client keeps appending to and reading; older ones are left alone
+    private static final int ACTIVE_SESSIONS = 10;
+
+    private final LoadTestConfig config;
+    private final HttpClient http;
+    private final URI base;
+    private final String userId;
+    private final SplittableRandom random;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final String content;
+    private final long recordFrom;
+    private final long end;
+    // Time between two requests of this client; 0 for a closed loop
+    private final long intervalNanos;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+    private final List<UUID> sessions = new ArrayList<>();
+
+    LoadClient(int index, LoadTestConfig config, HttpClient http, URI base, long recordFrom, long end) {
+        this.config = config;
+        this.http = http;
+        this.base = base;
+        this.userId = "load-user-" + (index % config.users());
+        this.random = new SplittableRandom(index);
+        this.operations = Operation.values();
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += config.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.content = "x".repeat(config.messageSize());
+        this.recordFrom = recordFrom;
+        this.end = end;
+        this.intervalNanos = config.rate() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * config.concurrency() / config.rate()) : 0;
+        for (Operation operation : operations) {
+            latencies.put(operation, new Histogram(TimeUnit.MINUTES.toNanos(1), 3));
+            errors.put(operation, 0L);
+        }
+    }
+
+    Map<Operation, Histogram> latencies() {
+        return latencies;
+    }
+
+    Map<Operation, Long> errors() {
+        return errors;
+    }
+
+    @Override
+    public void run() {
+        // Every client starts with a session, outside the measurements
+        send(Operation.CREATE);
+        // Spread the clients' first requests over one interval
+        long due = System.nanoTime() + (intervalNanos > 0 ? random.nextLong(intervalNanos) : 0);
+        while (true) {
+            if (intervalNanos > 0) {
+                LockSupport.parkNanos(due - System.nanoTime());
+            } else {
+                due = System.nanoTime();
+            }
+            if (due >= end) {
+                return;
+            }
+            Operation operation = sessions.isEmpty() ? Operation.CREATE : next();
+            boolean ok = send(operation);
+            if (due >= recordFrom) {
+                if (ok) {
+                    // Measured from when the request was due, not from when it could be sent
+                    latencies.get(operation).recordValue(Math.min(System.nanoTime() - due,
+                            latencies.get(operation).getHighestTrackableValue()));
+                } else {
+                    errors.merge(operation, 1L, Long::sum);
+                }
+            }
+            due += intervalNanos;
+        }
+    }
+
+    private Operation next() {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    // Returns whether the call succeeded with a 2xx
+    private boolean send(Operation operation) {
+        UUID session = sessions.isEmpty() ? null : sessions.get(random.nextInt(sessions.size()));
+        try {
+            HttpResponse<String> response = http.send(request(operation, session), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                return false;
+            }
+            if (operation == Operation.CREATE) {
+                sessions.add(UUID.fromString(JSON.readTree(response.body()).get("id").asText()));
+                if (sessions.size() > ACTIVE_SESSIONS) {
+                    sessions.remove(0);
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpRequest request(Operation operation, UUID session) {
+        return switch (operation) {
+            case CREATE -> post("/api/v1/sessions",
+                    "{\"userId\":\"" + userId + "\",\"title\":\"Load test\"}");
+            case APPEND -> post("/api/v1/sessions/" + session + "/messages",
+                    "{\"userId\":\"" + userId + "\",\"sender\":\"" + (random.nextBoolean() ? "USER" : "ASSISTANT")
+                            + "\",\"content\":\"" + content + "\"}");
+            case TAIL -> get("/api/v1/sessions/" + session + "/messages/tail?n=20");
+            case LIST -> get("/api/v1/sessions?userId=" + userId + "&limit=20");
+        };
+    }
+
+    private HttpRequest post(String path, String body) {
+        return builder(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return builder(path).GET().build();
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("X-API-KEY", config.apiKey());
+    }
+}
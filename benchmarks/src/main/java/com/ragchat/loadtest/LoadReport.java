@@ -0,0 +1,102 @@
+package com.ragchat.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Merged results of a run: latency histograms and error counts per operation, and the SLO checks
+final class LoadReport {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Duration measured;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+    private final Histogram all = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+
+    LoadReport(List<LoadClient> clients, Duration measured) {
+        this.measured = measured;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram(TimeUnit.MINUTES.toNanos(1), 3));
+            errors.put(operation, 0L);
+        }
+        for (LoadClient client : clients) {
+            client.latencies().forEach((operation, histogram) -> latencies.get(operation).add(histogram));
+            client.errors().forEach((operation, count) -> errors.merge(operation, count, Long::sum));
+        }
+        latencies.values().forEach(all::add);
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-8s %9s %9s %7s %9s %9s %9s %9s %9s%n",
+                "", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            print(out, operation.label(), latencies.get(operation), errors.get(operation));
+        }
+        print(out, "all", all, totalErrors());
+    }
+
+    private void print(PrintStream out, String label, Histogram histogram, long errors) {
+        out.printf("%-8s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                label,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / (measured.toMillis() / 1000.0),
+                errors,
+                millis(histogram, 50),
+                millis(histogram, 90),
+                millis(histogram, 99),
+                millis(histogram, 99.9),
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    // Full percentile distributions in milliseconds, e.g. for HdrHistogram's plotter
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Operation operation : Operation.values()) {
+            write(directory.resolve(operation.label() + ".hgrm"), latencies.get(operation));
+        }
+        write(directory.resolve("all.hgrm"), all);
+    }
+
+    private static void write(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "US-ASCII")) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    // Descriptions of the SLOs the run missed; empty when it passed
+    List<String> violations(LoadTestConfig config) {
+        List<String> violations = new ArrayList<>();
+        for (LoadTestConfig.Slo slo : config.slos()) {
+            Histogram histogram = slo.operation() == null ? all : latencies.get(slo.operation());
+            double actual = millis(histogram, slo.percentile());
+            if (histogram.getTotalCount() > 0 && actual > slo.maxMillis()) {
+                violations.add(String.format("%s is %.2f ms, above %.2f ms", slo.name(), actual, slo.maxMillis()));
+            }
+        }
+        long requests = all.getTotalCount() + totalErrors();
+        double errorRate = requests == 0 ? 1 : (double) totalErrors() / requests;
+        if (errorRate > config.maxErrorRate()) {
+            violations.add(String.format("error rate is %.4f (%d of %d), above %.4f",
+                    errorRate, totalErrors(), requests, config.maxErrorRate()));
+        }
+        return violations;
+    }
+
+    private long totalErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ragchat.loadtest;
+
+import com.ragchat.RagChatServiceApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the REST API. Starts the application against an embedded PostgreSQL (or targets a
+// running instance), drives a mix of create, append, tail and list calls from concurrent clients,
+// prints latency percentiles per operation and exits with status 1 if an SLO is missed.
+//
+//   java -cp benchmarks/target/benchmarks.jar com.ragchat.loadtest.LoadTest --concurrency=32 --rate=500
+//
+// See loadtest.properties for the settings and their defaults.
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.load(args);
+
+        EmbeddedPostgres postgres = null;
+        ConfigurableApplicationContext application = null;
+        URI base;
+        if (config.target().isEmpty()) {
+            postgres = EmbeddedPostgres.builder().start();
+            application = start(postgres, config.apiKey());
+            base = URI.create("http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort());
+        } else {
+            base = URI.create(config.target());
+        }
+
+        LoadReport report;
+        try {
+            report = run(config, base);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+
+        System.out.printf("%n%d clients, %s, %s after %s of warmup against %s%n", config.concurrency(),
+                config.rate() > 0 ? config.rate() + " req/s" : "closed loop", config.duration(), config.warmup(), base);
+        report.print(System.out);
+        report.write(config.reportDir());
+        System.out.println("Percentile distributions written to " + config.reportDir().toAbsolutePath());
+
+        List<String> violations = report.violations(config);
+        if (violations.isEmpty()) {
+            System.out.println("PASSED: all SLOs met");
+        } else {
+            System.out.println("FAILED:");
+            violations.forEach(violation -> System.out.println("  " + violation));
+        }
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    // The application as configured for production, except that rate limits are lifted: the load
+    // test measures the service, not the limiter
+    private static ConfigurableApplicationContext start(EmbeddedPostgres postgres, String apiKey) {
+        return new SpringApplicationBuilder(RagChatServiceApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--security.api-key=" + apiKey,
+                "--rate-limiting.requests-per-minute=" + Integer.MAX_VALUE,
+                "--rate-limiting.tiers.standard=" + Integer.MAX_VALUE,
+                "--context-compression.migrator.enabled=false");
+    }
+
+    private static LoadReport run(LoadTestConfig config, URI base) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long start = System.nanoTime();
+        long recordFrom = start + config.warmup().toNanos();
+        long end = recordFrom + config.duration().toNanos();
+
+        List<LoadClient> clients = new ArrayList<>(config.concurrency());
+        ExecutorService executor = Executors.newFixedThreadPool(config.concurrency());
+        for (int i = 0; i < config.concurrency(); i++) {
+            LoadClient client = new LoadClient(i, config, http, base, recordFrom, end);
+            clients.add(client);
+            executor.execute(client);
+        }
+        executor.shutdown();
+        long timeout = config.warmup().plus(config.duration()).plusMinutes(1).toSeconds();
+        if (!executor.awaitTermination(timeout, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+            throw new IllegalStateException("Clients did not finish within " + timeout + " s");
+        }
+        return new LoadReport(clients, config.duration());
+    }
+}
@@ -0,0 +1,93 @@
+package com.ragchat.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+// Settings of a load test run: loadtest.properties, overridden by --name=value arguments
+record LoadTestConfig(String target,
+                      String apiKey,
+                      int concurrency,
+                      int users,
+                      Duration warmup,
+                      Duration duration,
+                      double rate,
+                      Map<Operation, Integer> mix,
+                      int messageSize,
+                      List<Slo> slos,
+                      double maxErrorRate,
+                      Path reportDir) {
+
+    // A latency objective; operation is null for all operations together
+    record Slo(Operation operation, double percentile, double maxMillis) {
+
+        String name() {
+            return (operation == null ? "all" : operation.label()) + " p" + format(percentile);
+        }
+
+        private static String format(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+        }
+    }
+
+    static LoadTestConfig load(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = LoadTestConfig.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(defaults);
+        }
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            properties.setProperty(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, Integer.parseInt(properties.getProperty("mix." + operation.label(), "0")));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("At least one mix.* weight must be positive");
+        }
+
+        List<Slo> slos = new ArrayList<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("slo.") && !name.equals("slo.error-rate")) {
+                slos.add(slo(name, properties.getProperty(name)));
+            }
+        }
+        slos.sort((a, b) -> a.name().compareTo(b.name()));
+
+        return new LoadTestConfig(
+                properties.getProperty("target", "").trim(),
+                properties.getProperty("api-key"),
+                Integer.parseInt(properties.getProperty("concurrency")),
+                Integer.parseInt(properties.getProperty("users")),
+                Duration.parse(properties.getProperty("warmup")),
+                Duration.parse(properties.getProperty("duration")),
+                Double.parseDouble(properties.getProperty("rate")),
+                mix,
+                Integer.parseInt(properties.getProperty("message-size")),
+                slos,
+                Double.parseDouble(properties.getProperty("slo.error-rate")),
+                Path.of(properties.getProperty("report-dir")));
+    }
+
+    // slo.<operation|all>.p<percentile>=<milliseconds>
+    private static Slo slo(String name, String value) {
+        String[] parts = name.split("\\.", 3);
+        if (parts.length != 3 || !parts[2].startsWith("p")) {
+            throw new IllegalArgumentException("Expected slo.<operation>.p<percentile>, got " + name);
+        }
+        Operation operation = parts[1].equals("all") ? null : Operation.valueOf(parts[1].toUpperCase(Locale.ROOT));
+        return new Slo(operation, Double.parseDouble(parts[2].substring(1)), Double.parseDouble(value));
+    }
+}
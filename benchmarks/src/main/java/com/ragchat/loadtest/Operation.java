@@ -0,0 +1,20 @@
+package com.ragchat.loadtest;
+
+import java.util.Locale;
+
+// ChatController calls the load test mixes
+enum Operation {
+
+    // POST /sessions
+    CREATE,
+    // POST /sessions/{id}/messages
+    APPEND,
+    // GET /sessions/{id}/messages/tail?n=20
+    TAIL,
+    // GET /sessions?userId=...&limit=20
+    LIST;
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ragchat.repository;
+
+import com.ragchat.RagChatServiceApplication;
+import com.ragchat.api.dto.AddMessageRequest;
+import com.ragchat.api.dto.BulkMessageItem;
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.api.dto.ChatSessionResponse;
+import com.ragchat.api.dto.CreateSessionRequest;
+import com.ragchat.api.dto.CursorPageResponse;
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.service.ChatService;
+import com.ragchat.service.MessagePartitionConversion;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Database round-trips of the main API calls, through ChatService and the real application context,
+// against an embedded PostgreSQL started for the run. chat_messages is partitioned as in production.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    private static final String USER_ID = "bench-user";
+    private static final int SESSIONS = 50;
+    private static final int MESSAGES_PER_SESSION = 1000;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private ChatService chatService;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnly;
+    private UUID readSession;
+    private UUID writeSession;
+    private AddMessageRequest append;
+
+    @Setup
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        // Passed as arguments, which take precedence over application.yml
+        context = new SpringApplicationBuilder(RagChatServiceApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--context-compression.migrator.enabled=false");
+        // Waits for the conversion of the new, empty table started on startup
+        context.getBean(MessagePartitionConversion.class).convert();
+        chatService = context.getBean(ChatService.class);
+        entityManager = context.getBean(EntityManager.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<UUID> sessions = new ArrayList<>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            CreateSessionRequest request = new CreateSessionRequest();
+            request.setUserId(USER_ID);
+            request.setTitle("Session " + i);
+            sessions.add(chatService.createSession(request).getId());
+        }
+        readSession = sessions.get(0);
+        writeSession = sessions.get(1);
+        for (int i = 0; i < MESSAGES_PER_SESSION; i += 500) {
+            List<BulkMessageItem> items = new ArrayList<>(500);
+            for (int j = i; j < i + 500; j++) {
+                BulkMessageItem item = new BulkMessageItem();
+                item.setSessionId(readSession);
+                item.setSender(j % 2 == 0 ? "USER" : "ASSISTANT");
+                item.setContent("Message " + j + " of the conversation about the quarterly report.");
+                items.add(item);
+            }
+            chatService.addMessages(items);
+        }
+
+        append = new AddMessageRequest();
+        append.setUserId(USER_ID);
+        append.setSender("USER");
+        append.setContent("Which region grew fastest over the quarter?");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    // INSERT of the message and the session activity UPDATE, in one transaction
+    @Benchmark
+    public ChatMessageResponse appendMessage() {
+        return chatService.addMessage(writeSession, append);
+    }
+
+    // Latest page of a 1000-message session, as a chat window opens it
+    @Benchmark
+    public CursorPageResponse<ChatMessageResponse> latestPage() {
+        return chatService.getMessagesByCursor(readSession, null, "", 20, false);
+    }
+
+    // Oldest page of 100 messages, selected straight into ChatMessageResponse. Run with -prof gc and
+    // compare gc.alloc.rate.norm with messagePage100Entities.
+    @Benchmark
+    public CursorPageResponse<ChatMessageResponse> messagePage100() {
+        return chatService.getMessagesByCursor(readSession, "", null, 100, false);
+    }
+
+    // The same page read as managed ChatMessage entities and copied into responses, as the read
+    // paths did before the projections
+    @Benchmark
+    public List<ChatMessageResponse> messagePage100Entities() {
+        return readOnly.execute(status -> {
+            List<ChatMessage> rows = entityManager.createQuery("""
+                            select m from ChatMessage m
+                            where m.session.id = :sessionId and m.createdAt >= :since
+                            order by m.createdAt asc, m.id asc
+                            """, ChatMessage.class)
+                    .setParameter("sessionId", readSession)
+                    .setParameter("since", OffsetDateTime.now().minusYears(1))
+                    .setMaxResults(101)
+                    .getResultList();
+            List<ChatMessageResponse> page = new ArrayList<>(100);
+            for (ChatMessage row : rows.subList(0, Math.min(100, rows.size()))) {
+                ChatMessageResponse dto = new ChatMessageResponse();
+                dto.setId(row.getId());
+                dto.setSender(row.getSender());
+                dto.setContent(row.getContent());
+                dto.setCreatedAt(row.getCreatedAt());
+                page.add(dto);
+            }
+            return page;
+        });
+    }
+
+    @Benchmark
+    public List<ChatSessionResponse> listSessions() {
+        return chatService.listSessions(USER_ID);
+    }
+}
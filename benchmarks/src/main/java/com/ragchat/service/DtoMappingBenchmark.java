@@ -0,0 +1,61 @@
+package com.ragchat.service;
+
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.api.dto.ChatSessionResponse;
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.domain.ChatSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Entity to DTO mapping done for every message and session the API returns
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    private ChatMessage message;
+    private ChatSession session;
+
+    @Setup
+    public void setUp() {
+        session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("user-123");
+        session.setTitle("Quarterly report questions");
+        session.setFavorite(true);
+        session.setCreatedAt(OffsetDateTime.now().minusDays(3));
+        session.setUpdatedAt(OffsetDateTime.now());
+
+        message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSender("ASSISTANT");
+        message.setContent("The report lists revenue by region; EMEA grew fastest over the quarter.");
+        message.setCreatedAt(OffsetDateTime.now());
+    }
+
+    @Benchmark
+    public ChatMessageResponse toMessageResponse() {
+        return ChatService.toMessageResponse(message);
+    }
+
+    @Benchmark
+    public ChatSessionResponse toSessionResponse() {
+        return ChatService.toSessionResponse(session);
+    }
+}
@@ -0,0 +1,151 @@
+package com.ragchat.startup;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Time-to-ready of ways of starting the service, by default the standard executable jar against
+// the fast-start build (AOT, CDS archive, schema validated instead of updated). Every start is a new
+// process against an embedded PostgreSQL, timed from launch until the health endpoint answers 200.
+//
+//   java -cp benchmarks/target/benchmarks.jar com.ragchat.startup.StartupBenchmark --runs=10
+//
+// See startup.properties for the settings and their defaults. Process output goes to
+// target/startup/<variant>-<run>.log.
+public final class StartupBenchmark {
+
+    private static final Path LOG_DIR = Path.of("target", "startup");
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmarkConfig config = StartupBenchmarkConfig.load(args);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        Files.createDirectories(LOG_DIR);
+
+        Map<String, long[]> results = new LinkedHashMap<>();
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            for (Map.Entry<String, List<String>> variant : config.variants().entrySet()) {
+                String name = variant.getKey();
+                Map<String, String> environment = environment(postgres, createDatabase(postgres, name), config.port());
+
+                System.out.printf("%s: priming start%n", name);
+                start(name, 0, variant.getValue(), environment, config, http);
+                long[] millis = new long[config.runs()];
+                for (int run = 1; run <= config.runs(); run++) {
+                    millis[run - 1] = start(name, run, variant.getValue(), environment, config, http);
+                    System.out.printf("%s: run %d ready in %.2f s%n", name, run, millis[run - 1] / 1000.0);
+                }
+                results.put(name, millis);
+            }
+        }
+
+        print(results);
+    }
+
+    // Launches the command, waits until it is ready, then stops it. Returns the time to ready in ms.
+    private static long start(String variant, int run, List<String> command, Map<String, String> environment,
+                              StartupBenchmarkConfig config, HttpClient http) throws IOException, InterruptedException {
+        Path log = LOG_DIR.resolve(variant + "-" + run + ".log");
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        builder.environment().putAll(environment);
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + config.port() + config.readyPath()))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+
+        long launched = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = launched + config.readyTimeout().toNanos();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(variant + " exited with status " + process.exitValue() + ", see " + log);
+                }
+                if (ready(http, probe)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException(variant + " was not ready within " + config.readyTimeout() + ", see " + log);
+                }
+                Thread.sleep(config.pollInterval().toMillis());
+            }
+        } finally {
+            stop(process);
+        }
+    }
+
+    private static boolean ready(HttpClient http, HttpRequest probe) throws InterruptedException {
+        try {
+            return http.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException ex) {
+            // Not listening yet
+            return false;
+        }
+    }
+
+    // Graceful shutdown first, so the next start finds the port free and no connections left over
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static String createDatabase(EmbeddedPostgres postgres, String variant) throws Exception {
+        String database = "startup_" + variant.toLowerCase().replaceAll("[^a-z0-9]", "_");
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create database " + database);
+        }
+        return database;
+    }
+
+    private static Map<String, String> environment(EmbeddedPostgres postgres, String database, int port) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("DB_HOST", "localhost");
+        environment.put("DB_PORT", String.valueOf(postgres.getPort()));
+        environment.put("DB_NAME", database);
+        environment.put("DB_USER", "postgres");
+        environment.put("DB_PASSWORD", "");
+        environment.put("SERVER_PORT", String.valueOf(port));
+        environment.put("API_KEY", "startup");
+        return environment;
+    }
+
+    private static void print(Map<String, long[]> results) {
+        System.out.printf("%n%-12s %5s %9s %9s %9s %9s%n", "variant", "runs", "min s", "median s", "max s", "speedup");
+        double baseline = 0;
+        for (Map.Entry<String, long[]> result : results.entrySet()) {
+            long[] millis = result.getValue().clone();
+            Arrays.sort(millis);
+            double median = millis.length % 2 == 1
+                    ? millis[millis.length / 2]
+                    : (millis[millis.length / 2 - 1] + millis[millis.length / 2]) / 2.0;
+            if (baseline == 0) {
+                baseline = median;
+            }
+            System.out.printf("%-12s %5d %9.2f %9.2f %9.2f %8.2fx%n", result.getKey(), millis.length,
+                    millis[0] / 1000.0, median / 1000.0, millis[millis.length - 1] / 1000.0, baseline / median);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ragchat.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Settings of a startup benchmark run: startup.properties, overridden by --name=value arguments
+record StartupBenchmarkConfig(Map<String, List<String>> variants,
+                              int runs,
+                              String readyPath,
+                              Duration pollInterval,
+                              Duration readyTimeout,
+                              int port) {
+
+    static StartupBenchmarkConfig load(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = StartupBenchmarkConfig.class.getResourceAsStream("/startup.properties")) {
+            properties.load(defaults);
+        }
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            properties.setProperty(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        for (String name : properties.getProperty("variants").split(",")) {
+            String command = properties.getProperty("variant." + name.trim());
+            if (command == null || command.isBlank()) {
+                throw new IllegalArgumentException("No command for variant " + name.trim() + " (variant." + name.trim() + ")");
+            }
+            variants.put(name.trim(), Arrays.asList(command.trim().split("\\s+")));
+        }
+
+        return new StartupBenchmarkConfig(
+                variants,
+                Integer.parseInt(properties.getProperty("runs")),
+                properties.getProperty("ready-path"),
+                Duration.parse(properties.getProperty("poll-interval")),
+                Duration.parse(properties.getProperty("ready-timeout")),
+                Integer.parseInt(properties.getProperty("port")));
+    }
+}
@@ -2,8 +2,10 @@ package com.ragchat;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RagChatServiceApplication {
 
     public static void main(String[] args) {
@@ -2,6 +2,11 @@ package com.ragchat.api;
 
 import com.ragchat.api.dto.*;
 import com.ragchat.service.ChatService;
+import com.ragchat.service.MessageExportService;
+import com.ragchat.service.ResourceNotFoundException;
+import com.ragchat.service.SearchService;
+import com.ragchat.service.SessionEvents;
+import com.ragchat.service.VersionRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
@@ -11,13 +16,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,10 +43,24 @@ import java.util.UUID;
 @SecurityRequirement(name = "apiKeyAuth")
 public class ChatController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    // Polled responses may be stored but must be revalidated with their ETag on every use
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final ChatService chatService;
+    private final MessageExportService messageExportService;
+    private final SearchService searchService;
+    private final VersionRegistry versionRegistry;
+    private final Duration sseTimeout;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, MessageExportService messageExportService,
+                          SearchService searchService, VersionRegistry versionRegistry,
+                          @Value("${streaming.sse-timeout:PT30M}") Duration sseTimeout) {
         this.chatService = chatService;
+        this.searchService = searchService;
+        this.messageExportService = messageExportService;
+        this.versionRegistry = versionRegistry;
+        this.sseTimeout = sseTimeout;
     }
 
     // -------------------- CREATE SESSION --------------------
@@ -63,13 +89,18 @@ public class ChatController {
     @GetMapping("/sessions")
     @Operation(
             summary = "List chat sessions",
-            description = "Retrieves all chat sessions belonging to a specific user."
+            description = "Retrieves chat sessions belonging to a specific user, most recently updated first. " +
+                    "Supplying 'limit', 'cursor' or 'favorite' switches to paginated mode: the response " +
+                    "carries at most 'limit' sessions and a nextCursor token for the following page. " +
+                    "Responses carry an ETag; polling with If-None-Match returns 304 while nothing changed."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Sessions retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Sessions unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
-    public ResponseEntity<List<ChatSessionResponse>> listSessions(
+    public ResponseEntity<?> listSessions(
             @Parameter(
                     name = "userId",
                     description = "Unique identifier of the user whose sessions should be fetched",
@@ -77,9 +108,41 @@ public class ChatController {
                     example = "Ram",
                     in = ParameterIn.QUERY
             )
-            @RequestParam("userId") String userId) {
+            @RequestParam("userId") String userId,
+
+            @Parameter(
+                    description = "Paginated mode: maximum number of sessions to return (default 20, max 100)",
+                    example = "20"
+            )
+            @RequestParam(name = "limit", required = false) Integer limit,
+
+            @Parameter(
+                    description = "Paginated mode: nextCursor token from the previous page"
+            )
+            @RequestParam(name = "cursor", required = false) String cursor,
+
+            @Parameter(
+                    description = "Paginated mode: when true, only favorite sessions are returned"
+            )
+            @RequestParam(name = "favorite", required = false) Boolean favorite,
 
-        return ResponseEntity.ok(chatService.listSessions(userId));
+            @Parameter(
+                    description = "ETag of a previous response for the same query"
+            )
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        String etag = versionRegistry.sessionsTag(userId, limit, cursor, favorite);
+        if (notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+
+        if (limit != null || cursor != null || favorite != null) {
+            return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(
+                    chatService.listSessionsByCursor(userId, Boolean.TRUE.equals(favorite), cursor, limit)
+            );
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(chatService.listSessions(userId));
     }
 
     // -------------------- RENAME SESSION --------------------
@@ -138,7 +201,8 @@ public class ChatController {
     @DeleteMapping("/sessions/{sessionId}")
     @Operation(
             summary = "Delete a chat session",
-            description = "Deletes a chat session and all its associated messages permanently."
+            description = "Deletes a chat session and all its associated messages permanently. " +
+                    "The session disappears at once; its messages are removed in the background."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Session deleted successfully"),
@@ -156,6 +220,27 @@ public class ChatController {
         return ResponseEntity.noContent().build();
     }
 
+    // -------------------- BULK DELETE SESSIONS --------------------
+
+    @PostMapping("/sessions:batchDelete")
+    @Operation(
+            summary = "Delete sessions in bulk",
+            description = "Deletes up to 1000 chat sessions and their messages in one request. " +
+                    "The sessions disappear at once; their messages are removed in the background. " +
+                    "Ids of sessions that do not exist, or were already deleted, are counted as notFound."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sessions deleted",
+                    content = @Content(schema = @Schema(implementation = BulkDeleteSessionsResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request payload"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<BulkDeleteSessionsResponse> deleteSessionsBatch(
+            @Valid @RequestBody BulkDeleteSessionsRequest request) {
+
+        return ResponseEntity.ok(chatService.deleteSessions(request.getSessionIds()));
+    }
+
     // -------------------- ADD MESSAGE --------------------
 
     @PostMapping({"/sessions/{sessionId}/messages", "/sessions/messages"})
@@ -167,8 +252,12 @@ public class ChatController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Message added successfully",
                     content = @Content(schema = @Schema(implementation = ChatMessageResponse.class))),
+            @ApiResponse(responseCode = "202", description = "Message accepted for asynchronous persistence " +
+                    "(write-behind mode); createdAt is assigned when it is persisted",
+                    content = @Content(schema = @Schema(implementation = ChatMessageResponse.class))),
             @ApiResponse(responseCode = "404", description = "Session not found"),
-            @ApiResponse(responseCode = "401", description = "Unauthorized")
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Write-behind queue is full, retry later")
     })
     public ResponseEntity<ChatMessageResponse> addMessage(
             @Parameter(
@@ -178,23 +267,195 @@ public class ChatController {
             @PathVariable(value = "sessionId", required = false) UUID sessionId,
             @Valid @RequestBody AddMessageRequest request) {
 
+        if (sessionId != null && chatService.isWriteBehindEnabled()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(chatService.enqueueMessage(sessionId, request));
+        }
+
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(chatService.addMessage(sessionId, request));
     }
 
+    // -------------------- BULK ADD MESSAGES --------------------
+
+    @PostMapping("/sessions/messages:batch")
+    @Operation(
+            summary = "Add messages in bulk",
+            description = "Adds up to 1000 messages, possibly spanning several existing sessions, in one request. " +
+                    "Messages are inserted with JDBC batching and each item gets its own result; " +
+                    "items whose session does not exist are reported as SESSION_NOT_FOUND."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see per-item results",
+                    content = @Content(schema = @Schema(implementation = BulkAddMessagesResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid request payload"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<BulkAddMessagesResponse> addMessagesBatch(
+            @Valid @RequestBody BulkAddMessagesRequest request) {
+
+        return ResponseEntity.ok(chatService.addMessages(request.getMessages()));
+    }
+
+    // -------------------- STREAM MESSAGE --------------------
+
+    @PostMapping("/sessions/{sessionId}/messages:stream")
+    @Operation(
+            summary = "Open a streamed assistant message",
+            description = "Starts an assistant message whose content is sent in pieces, e.g. token by token " +
+                    "as it is generated. Pieces are appended in memory and pushed to subscribers of the " +
+                    "session's events; the message is stored as one row when it is completed. A stream " +
+                    "that receives nothing for a while is completed with the content received so far."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Stream opened; the id addresses the message",
+                    content = @Content(schema = @Schema(implementation = ChatMessageResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Too many open streams, retry later")
+    })
+    public ResponseEntity<ChatMessageResponse> openMessageStream(
+            @Parameter(description = "Unique identifier of the chat session", required = true)
+            @PathVariable("sessionId") UUID sessionId) {
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(chatService.openMessageStream(sessionId));
+    }
+
+    @PostMapping("/sessions/{sessionId}/messages/{messageId}:append")
+    @Operation(
+            summary = "Append to a streamed message",
+            description = "Appends a piece of content to an open stream. Pieces are applied in the order " +
+                    "they arrive, so a producer should wait for each response before sending the next."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Content appended"),
+            @ApiResponse(responseCode = "400", description = "Empty piece, or the message would exceed 4000 characters"),
+            @ApiResponse(responseCode = "404", description = "No open stream with this id in the session"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<Void> appendToMessageStream(
+            @Parameter(description = "Unique identifier of the chat session", required = true)
+            @PathVariable("sessionId") UUID sessionId,
+            @Parameter(description = "Id returned when the stream was opened", required = true)
+            @PathVariable("messageId") UUID messageId,
+            @Valid @RequestBody MessageDeltaRequest request) {
+
+        chatService.appendToMessageStream(sessionId, messageId, request.getContent());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/sessions/{sessionId}/messages/{messageId}:complete")
+    @Operation(
+            summary = "Complete a streamed message",
+            description = "Stores the streamed content as one message, with an optional RAG context, and ends " +
+                    "the stream."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Message stored",
+                    content = @Content(schema = @Schema(implementation = ChatMessageResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Nothing was streamed yet"),
+            @ApiResponse(responseCode = "404", description = "Session or open stream not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ChatMessageResponse> completeMessageStream(
+            @Parameter(description = "Unique identifier of the chat session", required = true)
+            @PathVariable("sessionId") UUID sessionId,
+            @Parameter(description = "Id returned when the stream was opened", required = true)
+            @PathVariable("messageId") UUID messageId,
+            @RequestBody(required = false) CompleteMessageRequest request) {
+
+        String context = request != null ? request.getContext() : null;
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(chatService.completeMessageStream(sessionId, messageId, context));
+    }
+
+    @PostMapping("/sessions/{sessionId}/messages/{messageId}:abort")
+    @Operation(
+            summary = "Abort a streamed message",
+            description = "Ends an open stream without storing anything."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Stream aborted"),
+            @ApiResponse(responseCode = "404", description = "No open stream with this id in the session"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<Void> abortMessageStream(
+            @Parameter(description = "Unique identifier of the chat session", required = true)
+            @PathVariable("sessionId") UUID sessionId,
+            @Parameter(description = "Id returned when the stream was opened", required = true)
+            @PathVariable("messageId") UUID messageId) {
+
+        if (!chatService.abortMessageStream(sessionId, messageId)) {
+            throw new ResourceNotFoundException("Message stream not found");
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // -------------------- SESSION EVENTS --------------------
+
+    @GetMapping(value = "/sessions/{sessionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Subscribe to a session's events",
+            description = "Server-Sent Events for new messages in the session: message.created for appended " +
+                    "messages; message.started, message.delta, message.completed and message.aborted for " +
+                    "streamed ones. Streams already open are sent as message.started with their content so " +
+                    "far and the seq of their last delta; apply only deltas with a higher seq. Events are " +
+                    "delivered by the instance the subscriber is connected to."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Too many subscribers, retry later")
+    })
+    public SseEmitter sessionEvents(
+            @Parameter(description = "Unique identifier of the chat session", required = true)
+            @PathVariable("sessionId") UUID sessionId) {
+
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        // A subscriber that falls behind is ended; the client reconnects and gets the open streams again
+        Runnable unsubscribe = chatService.subscribeToEvents(sessionId, event -> send(emitter, event),
+                emitter::complete);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    // Runs on a SessionEvents sender thread. A failed send ends the subscription: the exception
+    // makes SessionEvents drop the listener.
+    private static void send(SseEmitter emitter, SessionEvents.Event event) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(event.type())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+        } catch (IOException ex) {
+            emitter.completeWithError(ex);
+            throw new IllegalStateException("Subscriber disconnected", ex);
+        }
+    }
+
     // -------------------- GET MESSAGES --------------------
 
     @GetMapping("/sessions/{sessionId}/messages")
     @Operation(
             summary = "Get paginated messages",
-            description = "Retrieves paginated chat messages for a specific session."
+            description = "Retrieves paginated chat messages for a specific session. " +
+                    "Supplying 'after' or 'before' switches to cursor mode: the response carries " +
+                    "nextCursor/previousCursor tokens instead of page totals and no count query is run. " +
+                    "Pass an empty 'after' to start from the oldest message or an empty 'before' " +
+                    "to start from the newest. 'context' is only returned with includeContext=true. " +
+                    "Responses carry an ETag; polling with If-None-Match returns 304 while nothing changed."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Messages unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
             @ApiResponse(responseCode = "404", description = "Session not found"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
-    public ResponseEntity<Page<ChatMessageResponse>> getMessages(
+    public ResponseEntity<?> getMessages(
             @Parameter(
                     description = "Unique identifier of the chat session",
                     required = true
@@ -211,10 +472,170 @@ public class ChatController {
                     description = "Number of records per page",
                     example = "20"
             )
-            @RequestParam(name = "size", defaultValue = "20") int size) {
+            @RequestParam(name = "size", defaultValue = "20") int size,
 
-        return ResponseEntity.ok(
-                chatService.getMessages(sessionId, page, size)
+            @Parameter(
+                    description = "Cursor mode: return messages after this cursor (oldest first)"
+            )
+            @RequestParam(name = "after", required = false) String after,
+
+            @Parameter(
+                    description = "Cursor mode: return messages before this cursor (oldest first)"
+            )
+            @RequestParam(name = "before", required = false) String before,
+
+            @Parameter(
+                    description = "Include the stored RAG context of each message (decompressed on read)"
+            )
+            @RequestParam(name = "includeContext", defaultValue = "false") boolean includeContext,
+
+            @Parameter(
+                    description = "ETag of a previous response for the same query"
+            )
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        String etag = versionRegistry.messagesTag(sessionId, page, size, after, before, includeContext);
+        if (notModified(ifNoneMatch, etag)) {
+            // "*" matches any tag, so a missing session must still answer 404
+            chatService.requireSession(sessionId);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+
+        if (after != null || before != null) {
+            return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(
+                    chatService.getMessagesByCursor(sessionId, after, before, size, includeContext)
+            );
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(
+                chatService.getMessages(sessionId, page, size, includeContext)
         );
     }
-}
\ No newline at end of file
+
+    // -------------------- RECENT MESSAGES --------------------
+
+    @GetMapping("/sessions/{sessionId}/messages/tail")
+    @Operation(
+            summary = "Get the most recent messages",
+            description = "Returns the newest n messages of a session, oldest first, for prompt assembly. " +
+                    "Served from an in-memory buffer of recent turns; 'context' is not included. " +
+                    "n is capped at the buffer size (tail-buffer.messages-per-session)."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<List<ChatMessageResponse>> getRecentMessages(
+            @Parameter(
+                    description = "Unique identifier of the chat session",
+                    required = true
+            )
+            @PathVariable("sessionId") UUID sessionId,
+
+            @Parameter(
+                    description = "Number of most recent messages to return",
+                    example = "10"
+            )
+            @RequestParam(name = "n", defaultValue = "10") int n) {
+
+        return ResponseEntity.ok(chatService.getRecentMessages(sessionId, n));
+    }
+
+    // -------------------- EXPORT MESSAGES --------------------
+
+    @GetMapping(value = "/sessions/{sessionId}/messages:export", produces = NDJSON)
+    @Operation(
+            summary = "Export the full message history",
+            description = "Streams every message of a session as newline-delimited JSON, oldest first. " +
+                    "Rows are read through a database cursor, so memory use does not grow with session size."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "NDJSON stream of ChatMessageResponse objects"),
+            @ApiResponse(responseCode = "404", description = "Session not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+            @Parameter(
+                    description = "Unique identifier of the chat session",
+                    required = true
+            )
+            @PathVariable("sessionId") UUID sessionId,
+
+            @Parameter(
+                    description = "Include the stored RAG context of each message"
+            )
+            @RequestParam(name = "includeContext", defaultValue = "true") boolean includeContext) {
+
+        // Resolve 404 before the response is committed to streaming
+        messageExportService.checkSessionExists(sessionId);
+
+        StreamingResponseBody body = out -> messageExportService.exportMessages(sessionId, includeContext, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"session-" + sessionId + ".ndjson\"")
+                .body(body);
+    }
+
+    // -------------------- SEARCH --------------------
+
+    @GetMapping("/search")
+    @Operation(
+            summary = "Search a user's chat history",
+            description = "Full-text search over message contents and session titles of one user. " +
+                    "Supports web-search syntax (quoted phrases, OR, -exclusion). Results are ordered by " +
+                    "relevance, carry a snippet with matches wrapped in <mark>, and are paginated with " +
+                    "'nextCursor'."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search results retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Blank query or invalid cursor"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<CursorPageResponse<SearchHitResponse>> search(
+            @Parameter(
+                    description = "User whose sessions are searched",
+                    required = true,
+                    example = "user-123"
+            )
+            @RequestParam(name = "userId") String userId,
+
+            @Parameter(
+                    description = "Search query",
+                    required = true,
+                    example = "vector database"
+            )
+            @RequestParam(name = "q") String q,
+
+            @Parameter(
+                    description = "Opaque cursor from a previous response's nextCursor"
+            )
+            @RequestParam(name = "cursor", required = false) String cursor,
+
+            @Parameter(
+                    description = "Maximum number of results (default 20, max 100)",
+                    example = "20"
+            )
+            @RequestParam(name = "limit", required = false) Integer limit) {
+
+        return ResponseEntity.ok(searchService.search(userId, q, cursor, limit));
+    }
+
+    // If-None-Match may list several tags, weak or strong, or "*"
+    static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.ragchat.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BulkAddMessagesRequest {
+
+    @NotEmpty
+    @Size(max = 1000)
+    @Valid
+    private List<BulkMessageItem> messages;
+
+    public List<BulkMessageItem> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<BulkMessageItem> messages) {
+        this.messages = messages;
+    }
+}
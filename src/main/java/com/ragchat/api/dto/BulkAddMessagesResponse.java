@@ -0,0 +1,34 @@
+package com.ragchat.api.dto;
+
+import java.util.List;
+
+public class BulkAddMessagesResponse {
+
+    private int created;
+    private int failed;
+    private List<BulkMessageResult> results;
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BulkMessageResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BulkMessageResult> results) {
+        this.results = results;
+    }
+}
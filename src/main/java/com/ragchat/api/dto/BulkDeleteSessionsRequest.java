@@ -0,0 +1,23 @@
+package com.ragchat.api.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+public class BulkDeleteSessionsRequest {
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@NotNull UUID> sessionIds;
+
+    public List<UUID> getSessionIds() {
+        return sessionIds;
+    }
+
+    public void setSessionIds(List<UUID> sessionIds) {
+        this.sessionIds = sessionIds;
+    }
+}
@@ -0,0 +1,23 @@
+package com.ragchat.api.dto;
+
+public class BulkDeleteSessionsResponse {
+
+    private int deleted;
+    private int notFound;
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+
+    public int getNotFound() {
+        return notFound;
+    }
+
+    public void setNotFound(int notFound) {
+        this.notFound = notFound;
+    }
+}
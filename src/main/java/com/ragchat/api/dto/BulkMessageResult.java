@@ -0,0 +1,47 @@
+package com.ragchat.api.dto;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class BulkMessageResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String SESSION_NOT_FOUND = "SESSION_NOT_FOUND";
+
+    private int index;
+    private String status;
+    private UUID id;
+    private OffsetDateTime createdAt;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -11,6 +11,17 @@ public class ChatMessageResponse {
     private String context;
     private OffsetDateTime createdAt;
 
+    public ChatMessageResponse() {
+    }
+
+    // Used by the repository's constructor-expression queries; context is attached separately
+    public ChatMessageResponse(UUID id, String sender, String content, OffsetDateTime createdAt) {
+        this.id = id;
+        this.sender = sender;
+        this.content = content;
+        this.createdAt = createdAt;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -11,6 +11,29 @@ public class ChatSessionResponse {
     private boolean favorite;
     private OffsetDateTime createdAt;
     private OffsetDateTime updatedAt;
+    private OffsetDateTime lastMessageAt;
+    private long messageCount;
+    private String lastSender;
+    private String lastMessagePreview;
+
+    public ChatSessionResponse() {
+    }
+
+    // Used by the repository's constructor-expression queries
+    public ChatSessionResponse(UUID id, String userId, String title, boolean favorite, OffsetDateTime createdAt,
+                               OffsetDateTime updatedAt, OffsetDateTime lastMessageAt, long messageCount,
+                               String lastSender, String lastMessagePreview) {
+        this.id = id;
+        this.userId = userId;
+        this.title = title;
+        this.favorite = favorite;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.lastMessageAt = lastMessageAt;
+        this.messageCount = messageCount;
+        this.lastSender = lastSender;
+        this.lastMessagePreview = lastMessagePreview;
+    }
 
     public UUID getId() {
         return id;
@@ -59,5 +82,36 @@ public class ChatSessionResponse {
     public void setUpdatedAt(OffsetDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
 
+    public OffsetDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(OffsetDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public String getLastSender() {
+        return lastSender;
+    }
+
+    public void setLastSender(String lastSender) {
+        this.lastSender = lastSender;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+}
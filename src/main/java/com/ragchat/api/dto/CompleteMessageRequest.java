@@ -0,0 +1,14 @@
+package com.ragchat.api.dto;
+
+public class CompleteMessageRequest {
+
+    private String context;
+
+    public String getContext() {
+        return context;
+    }
+
+    public void setContext(String context) {
+        this.context = context;
+    }
+}
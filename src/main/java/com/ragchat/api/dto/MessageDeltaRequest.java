@@ -0,0 +1,18 @@
+package com.ragchat.api.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+public class MessageDeltaRequest {
+
+    // Appended as is; whitespace-only deltas are meaningful between tokens
+    @NotEmpty
+    private String content;
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ragchat.api.dto;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class SearchHitResponse {
+
+    public static final String MESSAGE = "MESSAGE";
+    public static final String SESSION = "SESSION";
+
+    // MESSAGE: id is a message id; SESSION: the session title matched and id is the session id
+    private String type;
+    private UUID id;
+    private UUID sessionId;
+    private String sessionTitle;
+    private String snippet;
+    private float rank;
+    private OffsetDateTime createdAt;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSessionTitle() {
+        return sessionTitle;
+    }
+
+    public void setSessionTitle(String sessionTitle) {
+        this.sessionTitle = sessionTitle;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public float getRank() {
+        return rank;
+    }
+
+    public void setRank(float rank) {
+        this.rank = rank;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
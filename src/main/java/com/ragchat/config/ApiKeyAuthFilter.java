@@ -1,29 +1,43 @@
 package com.ragchat.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.service.ApiKeyPrincipal;
+import com.ragchat.service.ApiKeyRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.Collections;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 @Component
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
-    private static final String API_KEY_HEADER = "X-API-KEY";
+    private static final byte[] UNAUTHORIZED_BODY = """
+            {"status":401,"error":"Unauthorized","message":"Invalid API key"}"""
+            .getBytes(StandardCharsets.UTF_8);
 
-    @Value("${security.api-key}")
-    private String expectedApiKey;
+    private static final byte[] FORBIDDEN_BODY = """
+            {"status":403,"error":"Forbidden","message":"API key lacks the required scope"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] NOT_READY_BODY = """
+            {"status":503,"error":"Service Unavailable","message":"API keys are not loaded yet, retry shortly"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ApiKeyRegistry apiKeyRegistry;
+    private final String apiKeyHeader;
+
+    public ApiKeyAuthFilter(ApiKeyRegistry apiKeyRegistry,
+                            @Value("${security.api-key-header:X-API-KEY}") String apiKeyHeader) {
+        this.apiKeyRegistry = apiKeyRegistry;
+        this.apiKeyHeader = apiKeyHeader;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -33,7 +47,8 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
         String path = request.getRequestURI();
 
-        if (path.startsWith("/actuator")
+        // Only health is public; the rest of /actuator needs a key with the metrics scope
+        if (path.startsWith("/actuator/health")
                 || path.startsWith("/v3/api-docs")
                 || path.startsWith("/swagger-ui")) {
 
@@ -41,35 +56,53 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             return;
         }
 
-        String apiKey = request.getHeader(API_KEY_HEADER);
+        String apiKey = request.getHeader(apiKeyHeader);
+        ApiKeyPrincipal principal = apiKey == null ? null : apiKeyRegistry.authenticate(apiKey);
 
-        if (apiKey == null || !apiKey.equals(expectedApiKey)) {
-
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.setContentType("application/json");
+        if (principal == null && apiKey != null && !apiKeyRegistry.isLoaded()) {
+            // Fail closed, but tell the client the key may well be valid
+            response.setHeader("Retry-After", "1");
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, NOT_READY_BODY);
+            return;
+        }
 
-            Map<String, Object> error = Map.of(
-                    "timestamp", Instant.now().toString(),
-                    "status", 401,
-                    "error", "Unauthorized",
-                    "message", "Invalid API key",
-                    "path", path
-            );
+        if (principal == null) {
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, UNAUTHORIZED_BODY);
+            return;
+        }
 
-            response.getWriter().write(new ObjectMapper().writeValueAsString(error));
+        if (!principal.hasScope(requiredScope(request, path))) {
+            reject(response, HttpServletResponse.SC_FORBIDDEN, FORBIDDEN_BODY);
             return;
         }
+
         UsernamePasswordAuthenticationToken authentication =
                 new UsernamePasswordAuthenticationToken(
-                        apiKey,
+                        principal,
                         null,
-                        Collections.singletonList(
-                                new SimpleGrantedAuthority("ROLE_API_CLIENT")
-                        )
+                        principal.authorities()
                 );
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    // Actuator endpoints need "metrics", other reads "read"; anything that changes state needs "write"
+    private static String requiredScope(HttpServletRequest request, String path) {
+        if (path.startsWith("/actuator")) {
+            return ApiKeyPrincipal.SCOPE_METRICS;
+        }
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method)
+                ? ApiKeyPrincipal.SCOPE_READ
+                : ApiKeyPrincipal.SCOPE_WRITE;
+    }
+
+    private static void reject(HttpServletResponse response, int status, byte[] body) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
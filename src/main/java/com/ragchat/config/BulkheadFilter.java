@@ -0,0 +1,87 @@
+package com.ragchat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Caps the number of API requests in flight. With virtual threads Tomcat no longer bounds
+// concurrency, so without this every excess request would queue inside Hikari until its
+// connection-timeout. Excess requests wait up to max-wait for a permit and then get 503;
+// once max-queued requests are already waiting, new ones are refused without waiting.
+@Component
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private static final byte[] REJECTED_BODY = """
+            {"status":503,"error":"Service Unavailable","message":"Too many concurrent requests"}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final int maxQueued;
+    private final Counter rejected;
+
+    public BulkheadFilter(@Value("${bulkhead.max-concurrent-requests:40}") int maxConcurrentRequests,
+                          @Value("${bulkhead.max-wait:2s}") Duration maxWait,
+                          @Value("${bulkhead.max-queued:200}") int maxQueued,
+                          MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueued = maxQueued;
+        this.rejected = Counter.builder("bulkhead.rejected")
+                .description("Requests refused because all bulkhead permits were taken")
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.available.permits", permits, Semaphore::availablePermits)
+                .description("Free request slots in the bulkhead")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        boolean acquired = permits.tryAcquire();
+        if (!acquired && permits.getQueueLength() < maxQueued) {
+            try {
+                acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!acquired) {
+            rejected.increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.setContentLength(REJECTED_BODY.length);
+            response.getOutputStream().write(REJECTED_BODY);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
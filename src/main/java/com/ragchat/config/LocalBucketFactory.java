@@ -0,0 +1,23 @@
+package com.ragchat.config;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Per-instance buckets: the effective limit is requests-per-minute times the replica count
+@Component
+@ConditionalOnProperty(name = "rate-limiting.mode", havingValue = "local", matchIfMissing = true)
+public class LocalBucketFactory implements RateLimitBucketFactory {
+
+    @Override
+    public Bucket create(String key, BucketConfiguration configuration) {
+        LocalBucketBuilder builder = Bucket.builder();
+        for (Bandwidth bandwidth : configuration.getBandwidths()) {
+            builder.addLimit(bandwidth);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.ragchat.config;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.TokensInheritanceStrategy;
+import io.github.bucket4j.distributed.jdbc.BucketTableSettings;
+import io.github.bucket4j.distributed.jdbc.PrimaryKeyMapper;
+import io.github.bucket4j.distributed.jdbc.SQLProxyConfiguration;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimization;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+import io.github.bucket4j.postgresql.PostgreSQLSelectForUpdateBasedProxyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Cluster-wide buckets stored in rate_limit_buckets, shared by every replica. Each returned
+// bucket consumes locally and reconciles with the row after sync-tokens tokens or sync-interval,
+// whichever comes first, so the database sees one SELECT ... FOR UPDATE per batch rather than per
+// request. The price is that each replica may overshoot the global limit by up to sync-tokens.
+@Component
+@ConditionalOnProperty(name = "rate-limiting.mode", havingValue = "postgres")
+public class PostgresBucketFactory implements RateLimitBucketFactory {
+
+    private final PostgreSQLSelectForUpdateBasedProxyManager<String> proxyManager;
+    private final Optimization optimization;
+
+    public PostgresBucketFactory(DataSource dataSource,
+                                 @Value("${rate-limiting.postgres.sync-tokens:10}") long syncTokens,
+                                 @Value("${rate-limiting.postgres.sync-interval:1s}") Duration syncInterval) {
+        SQLProxyConfiguration<String> configuration = SQLProxyConfiguration.builder()
+                .withTableSettings(BucketTableSettings.customSettings("rate_limit_buckets", "id", "state"))
+                .withPrimaryKeyMapper(PrimaryKeyMapper.STRING)
+                .build(dataSource);
+        this.proxyManager = new PostgreSQLSelectForUpdateBasedProxyManager<>(configuration);
+        this.optimization = Optimizations.delaying(new DelayParameters(syncTokens, syncInterval));
+    }
+
+    // Rows are keyed by the bucket key ("key:<api key id>"). The row may still hold the limit of
+    // an earlier tier of the key, set while this replica did not hold the bucket, so the
+    // configuration is replaced once on creation, which leaves an unchanged one as it was.
+    @Override
+    public Bucket create(String key, BucketConfiguration configuration) {
+        Bucket bucket = proxyManager.builder()
+                .withOptimization(optimization)
+                .build(key, () -> configuration);
+        bucket.replaceConfiguration(configuration, TokensInheritanceStrategy.ADDITIVE);
+        return bucket;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ragchat.config;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+
+// Creates the bucket behind an API key; rate-limiting.mode selects the implementation
+public interface RateLimitBucketFactory {
+
+    Bucket create(String key, BucketConfiguration configuration);
+}
@@ -1,17 +1,28 @@
 package com.ragchat.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ragchat.service.ApiKeyPrincipal;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.Refill;
+import io.github.bucket4j.TokensInheritanceStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,14 +30,50 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class RateLimitingFilter extends OncePerRequestFilter {
 
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final byte[] RATE_LIMITED_BODY = """
+            {"status":429,"error":"Too Many Requests","message":"Rate limit exceeded"}"""
+            .getBytes(StandardCharsets.UTF_8);
 
-    @Value("${security.api-key-header}")
-    private String apiKeyHeader;
+    // Tenant tags of requests without an API key and of tenants beyond max-tenant-tags
+    static final String ANONYMOUS_TENANT = "anonymous";
+    static final String OTHER_TENANT = "other";
+
+    // A bucket with the limit it was configured with
+    private record LimitedBucket(Bucket bucket, int requestsPerMinute) {
+    }
+
+    // Buckets are bounded in number and dropped once idle, so random keys cannot grow the heap.
+    // An evicted local bucket is recreated full, which is at most one extra window for an idle
+    // client; in postgres mode the recreated bucket picks up the shared state again.
+    private final Cache<String, LimitedBucket> buckets;
+
+    private final RateLimitBucketFactory bucketFactory;
+    private final MeterRegistry meterRegistry;
+    // Allowed and rejected counters per tenant. Tenants come from api_keys, so the tag is bounded
+    // by configuration rather than traffic; the cap guards the registry against a runaway table.
+    private final Map<String, Counter[]> tenantCounters = new ConcurrentHashMap<>();
+    private final int maxTenantTags;
 
     @Value("${rate-limiting.requests-per-minute}")
     private int requestsPerMinute;
 
+    public RateLimitingFilter(@Value("${rate-limiting.max-buckets:100000}") long maxBuckets,
+                              @Value("${rate-limiting.idle-timeout:10m}") Duration idleTimeout,
+                              @Value("${rate-limiting.max-tenant-tags:1000}") int maxTenantTags,
+                              MeterRegistry meterRegistry,
+                              RateLimitBucketFactory bucketFactory) {
+        this.bucketFactory = bucketFactory;
+        this.meterRegistry = meterRegistry;
+        this.maxTenantTags = maxTenantTags;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        Gauge.builder("rate.limit.buckets.active", buckets, Cache::estimatedSize)
+                .description("Rate-limit buckets currently held in memory")
+                .register(meterRegistry);
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
@@ -42,34 +89,96 @@ public class RateLimitingFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
-        String apiKey = request.getHeader(apiKeyHeader);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object caller = authentication == null ? null : authentication.getPrincipal();
 
-        Bucket bucket = buckets.computeIfAbsent(apiKey, this::createBucket);
+        Bucket bucket;
+        String tenant;
+        if (caller instanceof ApiKeyPrincipal principal) {
+            tenant = principal.tenantId();
+            bucket = bucket("key:" + principal.keyId(), principal.requestsPerMinute());
+        } else {
+            // Requests without a key (public endpoints other than health) are limited per client
+            // address in a separate namespace, so they can never share a bucket with an API key
+            bucket = bucket("ip:" + request.getRemoteAddr(), requestsPerMinute);
+            tenant = ANONYMOUS_TENANT;
+        }
 
+        Counter[] counters = counters(tenant);
         if (bucket.tryConsume(1)) {
+            counters[0].increment();
             filterChain.doFilter(request, response);
         } else {
+            counters[1].increment();
             response.setStatus(429);
             response.setContentType("application/json");
-            response.getWriter().write("""
-                {
-                  "status": 429,
-                  "error": "Too Many Requests",
-                  "message": "Rate limit exceeded"
+            response.setContentLength(RATE_LIMITED_BODY.length);
+            response.getOutputStream().write(RATE_LIMITED_BODY);
+        }
+    }
+
+    // One bucket per key whatever its tier: when the key's limit changes, the bucket it holds is
+    // reconfigured on the next request and gains (or loses) the difference in capacity
+    private Bucket bucket(String key, int requestsPerMinute) {
+        LimitedBucket held = buckets.get(key,
+                k -> new LimitedBucket(createBucket(k, requestsPerMinute), requestsPerMinute));
+        if (held.requestsPerMinute() != requestsPerMinute) {
+            held = buckets.asMap().compute(key, (k, current) -> {
+                if (current == null) {
+                    return new LimitedBucket(createBucket(k, requestsPerMinute), requestsPerMinute);
+                }
+                if (current.requestsPerMinute() != requestsPerMinute) {
+                    current.bucket().replaceConfiguration(configuration(requestsPerMinute),
+                            TokensInheritanceStrategy.ADDITIVE);
                 }
-            """);
+                return new LimitedBucket(current.bucket(), requestsPerMinute);
+            });
         }
+        return held.bucket();
     }
 
-    private Bucket createBucket(String key) {
+    // { allowed, rejected } for the tenant; once max-tenant-tags tenants are tagged, further ones
+    // are counted together under "other"
+    private Counter[] counters(String tenant) {
+        Counter[] counters = tenantCounters.get(tenant);
+        if (counters == null) {
+            String tag = tenantCounters.size() < maxTenantTags ? tenant : OTHER_TENANT;
+            counters = tenantCounters.computeIfAbsent(tag, t -> new Counter[] {
+                    Counter.builder("rate.limit.allowed")
+                            .description("Requests let through by the rate limiter")
+                            .tag("tenant", t)
+                            .register(meterRegistry),
+                    Counter.builder("rate.limit.rejected")
+                            .description("Requests refused with 429")
+                            .tag("tenant", t)
+                            .register(meterRegistry)
+            });
+        }
+        return counters;
+    }
+
+    // Keyless buckets always stay local; only API keys are shared across replicas
+    private Bucket createBucket(String key, int requestsPerMinute) {
+
+        if (key.startsWith("ip:")) {
+            return Bucket.builder()
+                    .addLimit(limit(requestsPerMinute))
+                    .build();
+        }
+
+        return bucketFactory.create(key, configuration(requestsPerMinute));
+    }
+
+    private static BucketConfiguration configuration(int requestsPerMinute) {
+        return BucketConfiguration.builder()
+                .addLimit(limit(requestsPerMinute))
+                .build();
+    }
 
-        Bandwidth limit = Bandwidth.classic(
+    private static Bandwidth limit(int requestsPerMinute) {
+        return Bandwidth.classic(
                 requestsPerMinute,
                 Refill.intervally(requestsPerMinute, Duration.ofMinutes(1))
         );
-
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package com.ragchat.config;
+
+import com.ragchat.service.ReplicaLagGuard;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Routes read-only transactions to a streaming replica when read-replica.url is set. Without it
+// this configuration is skipped and Boot's single spring.datasource pool is used as before.
+//
+// The application DataSource is a lazy proxy: a transaction gets a physical connection at its
+// first statement, after @Transactional(readOnly = true) has marked the connection read-only, so
+// the proxy can still pick the pool. Writes, reads outside a read-only transaction, schema
+// initialization and the rate-limit buckets all stay on the primary.
+@Configuration
+@ConditionalOnExpression("!'${read-replica.url:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(@Value("${read-replica.url}") String url,
+                                              @Value("${read-replica.username}") String username,
+                                              @Value("${read-replica.password}") String password,
+                                              @Value("${read-replica.pool-size}") int poolSize,
+                                              @Value("${spring.datasource.hikari.connection-timeout:30000}") long connectionTimeout) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setJdbcUrl(url);
+        replica.setUsername(username);
+        replica.setPassword(password);
+        replica.setMaximumPoolSize(poolSize);
+        replica.setConnectionTimeout(connectionTimeout);
+        replica.setReadOnly(true);
+        replica.setPoolName("rag-chat-replica");
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(new DelegatingDataSource(replica) {
+            // A user or session written to moments ago reads from the primary (ReplicaLagGuard)
+            @Override
+            public Connection getConnection() throws SQLException {
+                return ReplicaLagGuard.isPinnedToPrimary() ? primary.getConnection() : super.getConnection();
+            }
+        });
+        return proxy;
+    }
+}
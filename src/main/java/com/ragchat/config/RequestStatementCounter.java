@@ -0,0 +1,68 @@
+package com.ragchat.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+// Counts the SQL statements Hibernate prepares while a controller handles a request and records
+// them per route, so an N+1 regression shows up as a shift in http.server.requests.statements.
+// Statements issued through JdbcTemplate, or on other threads (write-behind flushes, the body of a
+// streamed response), are not attributed to the request.
+@Component
+public class RequestStatementCounter implements StatementInspector, AsyncHandlerInterceptor {
+
+    // Bucket boundaries for the histogram: a handful of statements is normal, dozens is a loop
+    private static final double[] BOUNDARIES = {1, 2, 3, 5, 10, 20, 50, 100};
+
+    private final ThreadLocal<int[]> statements = new ThreadLocal<>();
+    private final MeterRegistry meterRegistry;
+
+    public RequestStatementCounter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = statements.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        statements.set(new int[1]);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The async dispatch that completes the request runs preHandle again
+        statements.remove();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int[] count = statements.get();
+        statements.remove();
+        if (count == null) {
+            return;
+        }
+        // The route template, never the raw path, so ids in the path do not become tags
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("http.server.requests.statements")
+                .description("SQL statements issued by Hibernate per request")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .serviceLevelObjectives(BOUNDARIES)
+                .register(meterRegistry)
+                .record(count[0]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.ragchat.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -14,7 +15,8 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(
             HttpSecurity http,
             ApiKeyAuthFilter apiKeyAuthFilter,
-            RateLimitingFilter rateLimitingFilter
+            RateLimitingFilter rateLimitingFilter,
+            BulkheadFilter bulkheadFilter
     ) throws Exception {
 
         http
@@ -23,8 +25,12 @@ public class SecurityConfig {
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authorizeHttpRequests(auth -> auth
+                        // Streaming responses complete on an async dispatch that was already
+                        // authenticated on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
-                                "/actuator/**",
+                                "/actuator/health",
+                                "/actuator/health/**",
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**"
                         ).permitAll()
@@ -33,7 +39,9 @@ public class SecurityConfig {
                 .addFilterBefore(apiKeyAuthFilter,
                         UsernamePasswordAuthenticationFilter.class)
                 .addFilterAfter(rateLimitingFilter,
-                        ApiKeyAuthFilter.class);
+                        ApiKeyAuthFilter.class)
+                .addFilterAfter(bulkheadFilter,
+                        RateLimitingFilter.class);
 
         return http.build();
     }
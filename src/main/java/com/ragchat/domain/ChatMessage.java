@@ -1,18 +1,25 @@
 package com.ragchat.domain;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chat_messages")
-public class ChatMessage {
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_session_created_id", columnList = "session_id, created_at, id")
+})
+public class ChatMessage implements Persistable<UUID> {
 
+    // Assigned by the application (see assignId) so callers such as the write-behind queue
+    // can hand out an id before the row exists. Persistable keeps save() on persist, not merge.
     @Id
-    @GeneratedValue
     private UUID id;
 
+    @Transient
+    private boolean persisted;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "session_id", nullable = false)
     private ChatSession session;
@@ -23,12 +30,50 @@ public class ChatMessage {
     @Column(nullable = false, length = 4000)
     private String content;
 
-    @Column(columnDefinition = "TEXT")
-    private String context; // optional retrieved context JSON or text
+    // Optional retrieved context JSON or text, deduplicated through the context chunk store: the
+    // compressed recipe plus the hashes of the chunks it references (see ContextChunkStore).
+    // Lazy through bytecode enhancement: loading a message fetches neither.
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "context_recipe")
+    private byte[] contextRecipe;
+
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "context_chunks")
+    private byte[] contextChunks;
+
+    // Whole context as written before the chunk store, zstd-compressed (see CompressedContextConverter)
+    // or, older still, as TEXT. ContextCompressionMigrator rewrites both into recipes.
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = CompressedContextConverter.class)
+    @Column(name = "context_zstd", updatable = false)
+    private String compressedContext;
+
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "context", columnDefinition = "TEXT", updatable = false)
+    private String legacyContext;
 
     @Column(nullable = false, updatable = false)
     private OffsetDateTime createdAt = OffsetDateTime.now();
 
+    @PrePersist
+    void assignId() {
+        if (id == null) {
+            id = UUID.randomUUID();
+        }
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @Override
     public UUID getId() {
         return id;
     }
@@ -61,12 +106,17 @@ public class ChatMessage {
         this.content = content;
     }
 
-    public String getContext() {
-        return context;
+    public byte[] getContextRecipe() {
+        return contextRecipe;
+    }
+
+    public byte[] getContextChunks() {
+        return contextChunks;
     }
 
-    public void setContext(String context) {
-        this.context = context;
+    public void setStoredContext(byte[] contextRecipe, byte[] contextChunks) {
+        this.contextRecipe = contextRecipe;
+        this.contextChunks = contextChunks;
     }
 
     public OffsetDateTime getCreatedAt() {
@@ -1,6 +1,7 @@
 package com.ragchat.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -8,7 +9,12 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chat_sessions")
+@Table(name = "chat_sessions", indexes = {
+        @Index(name = "idx_chat_sessions_user_updated_id", columnList = "user_id, updated_at DESC, id")
+})
+// Deleted sessions are tombstoned (deleted_at set) and hidden from every entity query until
+// SessionPurger has removed their messages and the row itself
+@SQLRestriction("deleted_at is null")
 public class ChatSession {
 
     @Id
@@ -30,7 +36,24 @@ public class ChatSession {
     @Column(nullable = false)
     private OffsetDateTime updatedAt = OffsetDateTime.now();
 
-    @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    private OffsetDateTime deletedAt;
+
+    // Activity of the session's messages, maintained by ChatSessionRepository.recordMessages in the
+    // appending transaction. Never written through the entity, so a rename cannot overwrite them.
+    @Column(insertable = false, updatable = false)
+    private OffsetDateTime lastMessageAt;
+
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long messageCount;
+
+    @Column(insertable = false, updatable = false)
+    private String lastSender;
+
+    @Column(length = 200, insertable = false, updatable = false)
+    private String lastMessagePreview;
+
+    // No cascade: messages are removed in batches by SessionPurger, never through this collection
+    @OneToMany(mappedBy = "session", fetch = FetchType.LAZY)
     @OrderBy("createdAt ASC")
     private List<ChatMessage> messages = new ArrayList<>();
 
@@ -87,6 +110,26 @@ public class ChatSession {
         this.updatedAt = updatedAt;
     }
 
+    public OffsetDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public OffsetDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public String getLastSender() {
+        return lastSender;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
     public List<ChatMessage> getMessages() {
         return messages;
     }
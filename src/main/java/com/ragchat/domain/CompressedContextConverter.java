@@ -0,0 +1,27 @@
+package com.ragchat.domain;
+
+import com.ragchat.service.ContextCodec;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores ChatMessage.context as a zstd frame. Hibernate obtains converters from the Spring bean
+// container, so the codec (and its dictionaries) is injected.
+@Converter
+public class CompressedContextConverter implements AttributeConverter<String, byte[]> {
+
+    private final ContextCodec codec;
+
+    public CompressedContextConverter(ContextCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String context) {
+        return codec.compress(context);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] frame) {
+        return codec.decompress(frame);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ragchat.domain;
+
+import jakarta.persistence.*;
+
+import java.time.OffsetDateTime;
+
+// A zstd dictionary trained on sample contexts. Rows are never updated or deleted: every compressed
+// context names its dictionary in the frame header and needs it to be read back.
+@Entity
+@Table(name = "context_dictionaries")
+public class ContextDictionary {
+
+    // The dictionary id zstd writes into the header of each frame
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private byte[] content;
+
+    @Column(nullable = false)
+    private int sampleCount;
+
+    @Column(nullable = false, updatable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
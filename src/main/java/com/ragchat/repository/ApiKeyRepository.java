@@ -0,0 +1,12 @@
+package com.ragchat.repository;
+
+import com.ragchat.domain.ApiKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ApiKeyRepository extends JpaRepository<ApiKey, UUID> {
+
+    List<ApiKey> findByEnabledTrue();
+}
@@ -1,16 +1,230 @@
 package com.ragchat.repository;
 
+import com.ragchat.api.dto.ChatMessageResponse;
 import com.ragchat.domain.ChatMessage;
-import com.ragchat.domain.ChatSession;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
 
-    Page<ChatMessage> findBySessionOrderByCreatedAtAsc(ChatSession session, Pageable pageable);
+    // chat_messages is partitioned by created_at month (see MessagePartitionMaintenance). Every
+    // query bounds created_at, usually with "since" (see ChatService.messagesSince), so it only
+    // visits the partitions that can hold the session's messages.
 
-}
+    // Read paths select straight into ChatMessageResponse (a JPQL constructor expression): no
+    // managed entities, session proxies or persistence-context entries for rows that are only
+    // serialized. Context is attached afterwards, see ContextChunkStore.attachContexts.
+    String MESSAGE_RESPONSE = """
+            select new com.ragchat.api.dto.ChatMessageResponse(m.id, m.sender, m.content, m.createdAt)
+            from ChatMessage m
+            """;
+
+    @Query(value = MESSAGE_RESPONSE + """
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt asc
+            """,
+            countQuery = """
+            select count(m) from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :since
+            """)
+    Page<ChatMessageResponse> findPage(@Param("sessionId") UUID sessionId,
+                                       @Param("since") OffsetDateTime since,
+                                       Pageable pageable);
+
+    // Keyset queries: walk idx_chat_messages_session_created_id and never issue a count. The
+    // cursor's created_at is repeated as a plain range bound, so pruning does not depend on the
+    // planner deriving it from the keyset OR.
+
+    @Query(MESSAGE_RESPONSE + """
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt asc, m.id asc
+            """)
+    List<ChatMessageResponse> findOldest(@Param("sessionId") UUID sessionId,
+                                         @Param("since") OffsetDateTime since,
+                                         Pageable pageable);
+
+    @Query(MESSAGE_RESPONSE + """
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt desc, m.id desc
+            """)
+    List<ChatMessageResponse> findNewest(@Param("sessionId") UUID sessionId,
+                                         @Param("since") OffsetDateTime since,
+                                         Pageable pageable);
+
+    @Query(MESSAGE_RESPONSE + """
+            where m.session.id = :sessionId
+              and m.createdAt >= :createdAt
+              and (m.createdAt > :createdAt or (m.createdAt = :createdAt and m.id > :id))
+            order by m.createdAt asc, m.id asc
+            """)
+    List<ChatMessageResponse> findAfter(@Param("sessionId") UUID sessionId,
+                                        @Param("createdAt") OffsetDateTime createdAt,
+                                        @Param("id") UUID id,
+                                        Pageable pageable);
+
+    @Query(MESSAGE_RESPONSE + """
+            where m.session.id = :sessionId
+              and m.createdAt >= :since and m.createdAt <= :createdAt
+              and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))
+            order by m.createdAt desc, m.id desc
+            """)
+    List<ChatMessageResponse> findBefore(@Param("sessionId") UUID sessionId,
+                                         @Param("since") OffsetDateTime since,
+                                         @Param("createdAt") OffsetDateTime createdAt,
+                                         @Param("id") UUID id,
+                                         Pageable pageable);
+
+    // Forward-only cursor for exports; must be consumed inside a transaction and closed.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+            select m from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt asc, m.id asc
+            """)
+    Stream<ChatMessage> streamBySessionId(@Param("sessionId") UUID sessionId,
+                                          @Param("since") OffsetDateTime since);
+
+    // Deletes up to limit messages of a deleted session, see SessionPurger, and their context chunk
+    // references (see ContextChunkRepository)
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            with batch as (
+                select id, created_at, context_chunks
+                from chat_messages
+                where session_id = :sessionId and created_at >= :since
+                limit :limit
+            ),
+            refs as (
+                delete from context_chunk_refs r
+                using batch b, generate_series(0, length(b.context_chunks) / 32 - 1) as i
+                where b.context_chunks is not null
+                  and r.chunk_hash = substring(b.context_chunks from i * 32 + 1 for 32)
+                  and r.message_id = b.id
+            )
+            delete from chat_messages m
+            using batch
+            where m.id = batch.id and m.created_at = batch.created_at and m.created_at >= :since
+            """)
+    int deleteBatch(@Param("sessionId") UUID sessionId, @Param("since") Instant since, @Param("limit") int limit);
 
+    // Context is lazy on ChatMessage; callers that need it load it for a whole page in one query,
+    // bounded by the oldest and newest message of the page
+    @Query("""
+            select m.id as id, m.contextRecipe as contextRecipe, m.contextChunks as contextChunks,
+                   m.compressedContext as compressedContext, m.legacyContext as legacyContext
+            from ChatMessage m
+            where m.id in :ids and m.createdAt between :from and :to
+            """)
+    List<MessageContextView> findContexts(@Param("ids") Collection<UUID> ids,
+                                          @Param("from") OffsetDateTime from,
+                                          @Param("to") OffsetDateTime to);
+
+    // Backlog of whole contexts to move into the chunk store, see ContextCompressionMigrator.
+    // Rows locked by another replica's migrator are skipped rather than waited for.
+    @Query(nativeQuery = true, value = """
+            select id, created_at as createdAt, context as legacyContext, context_zstd as compressedContext
+            from chat_messages
+            where context is not null or context_zstd is not null
+            limit :limit
+            for update skip locked
+            """)
+    List<LegacyContextView> lockUnchunkedContexts(@Param("limit") int limit);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            update chat_messages
+            set context_recipe = :recipe, context_chunks = :chunks, context = null, context_zstd = null
+            where id = :id and created_at = :createdAt
+            """)
+    int storeChunkedContext(@Param("id") UUID id, @Param("createdAt") Instant createdAt,
+                            @Param("recipe") byte[] recipe, @Param("chunks") byte[] chunks);
+
+    // Dictionary training samples
+    @Query(nativeQuery = true, value = """
+            select id, created_at as createdAt, context as legacyContext, context_zstd as compressedContext
+            from chat_messages
+            where context is not null or context_zstd is not null
+            limit :limit
+            """)
+    List<LegacyContextView> sampleUnchunkedContexts(@Param("limit") int limit);
+
+    @Query(nativeQuery = true,
+            value = "select context_recipe from chat_messages where context_recipe is not null limit :limit")
+    List<byte[]> sampleContextRecipes(@Param("limit") int limit);
+
+    // Ranked full-text search over the user's message contents and session titles. Every match is
+    // ranked (ts_rank cannot be served from the index), but ts_headline, the expensive part, only
+    // runs for the rows of the requested page. Matches are delimited with STX/ETX so the caller can
+    // HTML-escape the snippet before turning them into markup.
+    // The tsquery is written inline rather than in a CTE: a materialized CTE hides the search term
+    // from the planner, which then cannot tell a term in most messages from a rare one.
+    // Messages are bounded by the user's oldest session (less the slack of ChatService.messagesSince),
+    // which prunes the partitions older than any of the user's sessions at execution time.
+    String SEARCH_HITS = """
+            with hits as (
+                select 'MESSAGE' as type, m.id, m.session_id, m.created_at,
+                       ts_rank(m.content_tsv, websearch_to_tsquery('english', :q)) as rank
+                from chat_messages m
+                join chat_sessions s on s.id = m.session_id
+                where s.user_id = :userId and s.deleted_at is null
+                  and m.created_at >= (select min(created_at) from chat_sessions where user_id = :userId) - interval '1 day'
+                  and m.content_tsv @@ websearch_to_tsquery('english', :q)
+                union all
+                select 'SESSION', s.id, s.id, s.created_at,
+                       ts_rank(to_tsvector('english', s.title), websearch_to_tsquery('english', :q))
+                from chat_sessions s
+                where s.user_id = :userId and s.deleted_at is null
+                  and to_tsvector('english', s.title) @@ websearch_to_tsquery('english', :q)
+            )
+            """;
+
+    String SEARCH_PAGE = """
+            select p.type as type, p.id as id, p.session_id as sessionId, s.title as sessionTitle,
+                   p.created_at as createdAt, p.rank as rank,
+                   ts_headline('english', coalesce(m.content, s.title), websearch_to_tsquery('english', :q),
+                               'StartSel=\u0002, StopSel=\u0003, MaxFragments=2, MaxWords=20, MinWords=5') as snippet
+            from page p
+            join chat_sessions s on s.id = p.session_id
+            left join chat_messages m on p.type = 'MESSAGE' and m.id = p.id and m.created_at = p.created_at
+            order by p.rank desc, p.id
+            """;
+
+    @Query(nativeQuery = true, value = SEARCH_HITS + """
+            , page as (select * from hits order by rank desc, id limit :limit)
+            """ + SEARCH_PAGE)
+    List<SearchHitView> search(@Param("userId") String userId,
+                               @Param("q") String q,
+                               @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = SEARCH_HITS + """
+            , page as (
+                select * from hits
+                where rank < :rank or (rank = :rank and id > :id)
+                order by rank desc, id
+                limit :limit
+            )
+            """ + SEARCH_PAGE)
+    List<SearchHitView> searchAfter(@Param("userId") String userId,
+                                    @Param("q") String q,
+                                    @Param("rank") float rank,
+                                    @Param("id") UUID id,
+                                    @Param("limit") int limit);
+}
@@ -1,14 +1,125 @@
 package com.ragchat.repository;
 
+import com.ragchat.api.dto.ChatSessionResponse;
 import com.ragchat.domain.ChatSession;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
 
-    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(String userId);
+    // Read paths select straight into ChatSessionResponse (a JPQL constructor expression), so listing
+    // sessions creates no managed entities. The entity's tombstone restriction still applies.
+    String SESSION_RESPONSE = """
+            select new com.ragchat.api.dto.ChatSessionResponse(s.id, s.userId, s.title, s.favorite,
+                   s.createdAt, s.updatedAt, s.lastMessageAt, s.messageCount, s.lastSender, s.lastMessagePreview)
+            from ChatSession s
+            """;
 
-}
+    @Query(SESSION_RESPONSE + """
+            where s.userId = :userId
+            order by s.updatedAt desc
+            """)
+    List<ChatSessionResponse> findByUserId(@Param("userId") String userId);
+
+    @Query("select s.id from ChatSession s where s.id in :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    // Number of messages recordMessages has counted, read by RecentMessagesBuffer to tell whether
+    // its copy of the session's tail is current. Empty once the session is tombstoned.
+    @Query("select s.messageCount from ChatSession s where s.id = :id")
+    Optional<Long> findMessageCount(@Param("id") UUID id);
+
+    @Query("select distinct s.userId from ChatSession s where s.id in :ids")
+    List<String> findUserIds(@Param("ids") Collection<UUID> ids);
+
+    // Folds appended messages into the session's activity columns in one statement, without reading
+    // the row first. The row lock it takes (FOR NO KEY UPDATE) does not conflict with the FOR KEY
+    // SHARE lock that concurrent message inserts take for their foreign key check, so appends to the
+    // same session only wait for each other at this update. The last-message columns only move
+    // forward, so messages applied out of order keep the newest one. Pending inserts are flushed
+    // first, which also keeps the lock until commit as short as possible. Returns 0 for a
+    // tombstoned session, whose id may still be cached as live on this or another instance.
+    @Modifying(flushAutomatically = true)
+    @Query(nativeQuery = true, value = """
+            update chat_sessions
+            set message_count = message_count + :count,
+                last_sender = case when last_message_at is null or last_message_at <= :lastAt
+                                   then :sender else last_sender end,
+                last_message_preview = case when last_message_at is null or last_message_at <= :lastAt
+                                            then :preview else last_message_preview end,
+                last_message_at = greatest(last_message_at, :lastAt),
+                updated_at = greatest(updated_at, :lastAt)
+            where id = :id and deleted_at is null
+            """)
+    int recordMessages(@Param("id") UUID id,
+                       @Param("count") int count,
+                       @Param("lastAt") OffsetDateTime lastAt,
+                       @Param("sender") String sender,
+                       @Param("preview") String preview);
+
+    // Deleting a session only tombstones it; SessionPurger removes it and its messages later
+    @Modifying
+    @Query("update ChatSession s set s.deletedAt = :now where s.id in :ids and s.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<UUID> ids, @Param("now") OffsetDateTime now);
+
+    // Tombstones are invisible to entity queries (see ChatSession), so the purger reads them natively.
+    // Sessions locked by another replica's purger are skipped rather than waited for.
+    @Query(nativeQuery = true, value = """
+            select id, created_at as createdAt
+            from chat_sessions
+            where deleted_at is not null
+            order by deleted_at
+            limit :limit
+            for update skip locked
+            """)
+    List<DeletedSessionView> lockDeleted(@Param("limit") int limit);
 
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from chat_sessions where id = :id and deleted_at is not null")
+    int purge(@Param("id") UUID id);
+
+    // Keyset queries ordered (updatedAt desc, id asc) to match idx_chat_sessions_user_updated_id.
+    // The favorite variants keep "favorite = true" as a literal so the planner can use the
+    // partial index idx_chat_sessions_user_favorite_updated_id from db/indexes.sql.
+
+    @Query(SESSION_RESPONSE + """
+            where s.userId = :userId
+            order by s.updatedAt desc, s.id asc
+            """)
+    List<ChatSessionResponse> findByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SESSION_RESPONSE + """
+            where s.userId = :userId
+              and (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id > :id))
+            order by s.updatedAt desc, s.id asc
+            """)
+    List<ChatSessionResponse> findByUserIdAfter(@Param("userId") String userId,
+                                                @Param("updatedAt") OffsetDateTime updatedAt,
+                                                @Param("id") UUID id,
+                                                Pageable pageable);
+
+    @Query(SESSION_RESPONSE + """
+            where s.userId = :userId and s.favorite = true
+            order by s.updatedAt desc, s.id asc
+            """)
+    List<ChatSessionResponse> findFavoritesByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SESSION_RESPONSE + """
+            where s.userId = :userId and s.favorite = true
+              and (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id > :id))
+            order by s.updatedAt desc, s.id asc
+            """)
+    List<ChatSessionResponse> findFavoritesByUserIdAfter(@Param("userId") String userId,
+                                                         @Param("updatedAt") OffsetDateTime updatedAt,
+                                                         @Param("id") UUID id,
+                                                         Pageable pageable);
+}
@@ -0,0 +1,141 @@
+package com.ragchat.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// context_chunks and context_chunk_refs (see db/context-compression.sql). Plain JDBC rather than
+// JPA: every statement works on a set of chunks at once through arrays, and chunks are never loaded
+// as entities.
+@Repository
+public class ContextChunkRepository {
+
+    // A chunk to store: its hash, compressed data and uncompressed length
+    public record NewChunk(byte[] hash, byte[] data, int rawLength) {
+    }
+
+    // A message's reference to a chunk; the message's created_at lets references of retired
+    // message partitions be removed by range
+    public record Reference(byte[] hash, UUID messageId, Instant messageCreatedAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ContextChunkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // last_used_at of the chunks that exist, keyed by hash
+    public Map<ByteBuffer, Instant> findLastUsed(Collection<byte[]> hashes) {
+        Map<ByteBuffer, Instant> lastUsed = new HashMap<>();
+        jdbcTemplate.query(
+                "select hash, last_used_at from context_chunks where hash = any(?)",
+                ps -> ps.setArray(1, byteaArray(ps, hashes)),
+                rs -> {
+                    lastUsed.put(ByteBuffer.wrap(rs.getBytes(1)), rs.getTimestamp(2).toInstant());
+                });
+        return lastUsed;
+    }
+
+    // Compressed data of the chunks that exist, keyed by hash
+    public Map<ByteBuffer, byte[]> findData(Collection<byte[]> hashes) {
+        Map<ByteBuffer, byte[]> data = new HashMap<>();
+        jdbcTemplate.query(
+                "select hash, data from context_chunks where hash = any(?)",
+                ps -> ps.setArray(1, byteaArray(ps, hashes)),
+                rs -> {
+                    data.put(ByteBuffer.wrap(rs.getBytes(1)), rs.getBytes(2));
+                });
+        return data;
+    }
+
+    // Dictionary training samples
+    public List<byte[]> sampleData(int limit) {
+        return jdbcTemplate.query("select data from context_chunks limit ?", (rs, row) -> rs.getBytes(1), limit);
+    }
+
+    // Inserts the chunks, or marks them used when they already exist (which also covers a chunk
+    // the sweeper deleted after it was looked up). Callers pass distinct hashes in a fixed order
+    // so concurrent upserts of overlapping chunks cannot deadlock.
+    public void upsert(List<NewChunk> chunks) {
+        byte[][] hashes = new byte[chunks.size()][];
+        byte[][] data = new byte[chunks.size()][];
+        Integer[] rawLengths = new Integer[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            hashes[i] = chunks.get(i).hash();
+            data[i] = chunks.get(i).data();
+            rawLengths[i] = chunks.get(i).rawLength();
+        }
+        jdbcTemplate.update("""
+                        insert into context_chunks (hash, data, raw_length)
+                        select * from unnest(?::bytea[], ?::bytea[], ?::int[])
+                        on conflict (hash) do update set last_used_at = now()
+                        """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bytea", hashes));
+                    ps.setArray(2, ps.getConnection().createArrayOf("bytea", data));
+                    ps.setArray(3, ps.getConnection().createArrayOf("int4", rawLengths));
+                });
+    }
+
+    // Records which chunks the messages reference (see db/context-compression.sql). Must run in the
+    // transaction that stores the messages; a reference that exists already is left as it is.
+    public void addReferences(List<Reference> references) {
+        byte[][] hashes = new byte[references.size()][];
+        UUID[] messageIds = new UUID[references.size()];
+        Timestamp[] createdAts = new Timestamp[references.size()];
+        for (int i = 0; i < references.size(); i++) {
+            hashes[i] = references.get(i).hash();
+            messageIds[i] = references.get(i).messageId();
+            createdAts[i] = Timestamp.from(references.get(i).messageCreatedAt());
+        }
+        jdbcTemplate.update("""
+                        insert into context_chunk_refs (chunk_hash, message_id, message_created_at)
+                        select * from unnest(?::bytea[], ?::uuid[], ?::timestamptz[])
+                        on conflict do nothing
+                        """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bytea", hashes));
+                    ps.setArray(2, ps.getConnection().createArrayOf("uuid", messageIds));
+                    ps.setArray(3, ps.getConnection().createArrayOf("timestamptz", createdAts));
+                });
+    }
+
+    // Deletes up to limit references of messages created before the bound, i.e. of message
+    // partitions that have been retired. Returns the number deleted.
+    public int deleteReferencesBefore(Instant bound, int limit) {
+        return jdbcTemplate.update("""
+                delete from context_chunk_refs
+                where ctid = any(array(select ctid from context_chunk_refs
+                                       where message_created_at < ? limit ?))
+                """, Timestamp.from(bound), limit);
+    }
+
+    // Deletes chunks unused since the cutoff that no message references any more: one probe of the
+    // reference index per candidate, whatever the number of messages. last_used_at is tested in
+    // the DELETE itself: a chunk re-used while the sweep runs is locked and updated by the writer,
+    // and the recheck then keeps it. A writer that re-uses a chunk without touching it has seen it
+    // used within freshen-after, so the chunk is not a candidate.
+    public int sweep(Instant cutoff) {
+        return jdbcTemplate.update("""
+                delete from context_chunks c
+                where c.last_used_at < ?
+                  and not exists (select 1 from context_chunk_refs r where r.chunk_hash = c.hash)
+                """, Timestamp.from(cutoff));
+    }
+
+    private static Array byteaArray(PreparedStatement ps, Collection<byte[]> hashes) throws SQLException {
+        return ps.getConnection().createArrayOf("bytea", hashes.toArray(new byte[0][]));
+    }
+}
@@ -0,0 +1,11 @@
+package com.ragchat.repository;
+
+import com.ragchat.domain.ContextDictionary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ContextDictionaryRepository extends JpaRepository<ContextDictionary, Long> {
+
+    List<ContextDictionary> findAllByOrderByCreatedAtAsc();
+}
@@ -0,0 +1,12 @@
+package com.ragchat.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A tombstoned session waiting for SessionPurger
+public interface DeletedSessionView {
+
+    UUID getId();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,19 @@
+package com.ragchat.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A whole context written before the chunk store, as read by native queries
+public interface LegacyContextView {
+
+    UUID getId();
+
+    // Partition key, so the rewrite only touches the message's partition
+    Instant getCreatedAt();
+
+    // Uncompressed TEXT column
+    String getLegacyContext();
+
+    // zstd frame from context_zstd
+    byte[] getCompressedContext();
+}
@@ -0,0 +1,18 @@
+package com.ragchat.repository;
+
+import java.util.UUID;
+
+public interface MessageContextView {
+
+    UUID getId();
+
+    // Compressed recipe and chunk hashes, see ContextChunkStore
+    byte[] getContextRecipe();
+
+    byte[] getContextChunks();
+
+    // Whole context of rows not yet moved into the chunk store: decompressed context_zstd, or TEXT
+    String getCompressedContext();
+
+    String getLegacyContext();
+}
@@ -0,0 +1,235 @@
+package com.ragchat.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// DDL for the monthly range partitions of chat_messages (partitioned on created_at, UTC months).
+// Callers run these in a transaction after lock(), so replicas never change partitions concurrently.
+@Repository
+public class MessagePartitionRepository {
+
+    public static final String TABLE = "chat_messages";
+
+    // Check constraint and unique index the conversion prepares while the table stays in use
+    public static final String BOUND_CHECK = TABLE + "_partition_bound";
+    public static final String CONVERSION_INDEX = TABLE + "_id_created_at_key";
+
+    private static final long LOCK_KEY = 0x6368617470617274L; // "chatpart"
+    private static final long CONVERSION_LOCK_KEY = 0x63686174636f6e76L; // "chatconv"
+
+    // A partition and the exclusive upper bound of its range
+    public record Partition(String name, Instant upperBound) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessagePartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Waits for other replicas; DDL below also gives up quickly on locks held by queries
+    public void lock(String lockTimeout) {
+        jdbcTemplate.queryForObject("select pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+        jdbcTemplate.execute("set local lock_timeout = '" + lockTimeout + "'");
+    }
+
+    public boolean isPartitioned() {
+        String kind = jdbcTemplate.queryForObject(
+                "select relkind::text from pg_class where oid = to_regclass(?)", String.class, TABLE);
+        return "p".equals(kind);
+    }
+
+    // Runs the action while holding a session-level advisory lock, so only one replica converts
+    // the table at a time. The action runs its statements on other connections. Returns false
+    // without running it if another replica holds the lock.
+    public boolean runExclusively(Runnable action) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet locked = statement.executeQuery("select pg_try_advisory_lock(" + CONVERSION_LOCK_KEY + ")")) {
+                    if (!locked.next() || !locked.getBoolean(1)) {
+                        return false;
+                    }
+                }
+                try {
+                    action.run();
+                    return true;
+                } finally {
+                    statement.execute("select pg_advisory_unlock(" + CONVERSION_LOCK_KEY + ")");
+                }
+            }
+        }));
+    }
+
+    // The conversion is prepared in steps that do not block reads or writes, so that the step under
+    // the exclusive lock (convertToPartitioned) only changes the catalog:
+    //  1. createConversionIndex: the unique (id, created_at) index the partition's primary key
+    //     needs, built concurrently (outside a transaction)
+    //  2. addBoundCheck: CHECK (created_at < upperBound) NOT VALID, which only locks briefly (in a
+    //     transaction after lock())
+    //  3. validateBoundCheck: scans the table under SHARE UPDATE EXCLUSIVE (outside a transaction);
+    //     ATTACH PARTITION then relies on the check instead of scanning under its exclusive lock
+
+    public void createConversionIndex() {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "select indisvalid from pg_index where indexrelid = to_regclass(?)", Boolean.class, CONVERSION_INDEX);
+        if (!valid.isEmpty() && valid.get(0)) {
+            return;
+        }
+        if (!valid.isEmpty()) {
+            // Left invalid by an interrupted build
+            jdbcTemplate.execute("drop index concurrently " + CONVERSION_INDEX);
+        }
+        jdbcTemplate.execute("create unique index concurrently " + CONVERSION_INDEX + " on " + TABLE + " (id, created_at)");
+    }
+
+    public void addBoundCheck(Instant upperBound) {
+        dropBoundCheck();
+        jdbcTemplate.execute("alter table " + TABLE + " add constraint " + BOUND_CHECK
+                + " check (created_at < '" + upperBound + "') not valid");
+    }
+
+    public void validateBoundCheck() {
+        jdbcTemplate.execute("alter table " + TABLE + " validate constraint " + BOUND_CHECK);
+    }
+
+    public boolean hasBoundCheck() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_constraint where conrelid = to_regclass(?) and conname = ?)",
+                Boolean.class, TABLE, BOUND_CHECK));
+    }
+
+    // Removes the check of an unfinished conversion: left in place, it would reject every message
+    // from its upper bound on
+    public void dropBoundCheck() {
+        jdbcTemplate.execute("alter table " + TABLE + " drop constraint if exists " + BOUND_CHECK);
+    }
+
+    // Turns the plain table created by Hibernate into a partitioned one, once the steps above are
+    // done. The existing table is kept as-is (no rows are copied) and attached as the partition for
+    // everything before upperBound; its indexes and foreign keys are re-declared on the still empty
+    // parent and matched by PostgreSQL at ATTACH, and the concurrently built index becomes its
+    // primary key. Nothing here reads the rows, so the exclusive lock is only held for catalog
+    // changes.
+    public void convertToPartitioned(String legacyName, Instant upperBound) {
+        jdbcTemplate.execute("lock table " + TABLE + " in access exclusive mode");
+        jdbcTemplate.execute("alter table " + TABLE + " rename to " + legacyName);
+
+        List<String> indexes = new ArrayList<>();
+        for (Map<String, Object> index : jdbcTemplate.queryForList("""
+                select c.relname as name, pg_get_indexdef(i.indexrelid) as definition
+                from pg_index i
+                join pg_class c on c.oid = i.indexrelid
+                where i.indrelid = to_regclass(?) and not i.indisprimary and c.relname <> ?
+                """, legacyName, CONVERSION_INDEX)) {
+            String name = (String) index.get("name");
+            indexes.add(((String) index.get("definition"))
+                    .replaceFirst(" ON (\\S+\\.)?" + legacyName + " ", " ON " + TABLE + " "));
+            jdbcTemplate.execute("alter index " + name + " rename to " + truncate(name + "_legacy"));
+        }
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList("""
+                select conname as name, pg_get_constraintdef(oid) as definition
+                from pg_constraint
+                where conrelid = to_regclass(?) and contype = 'f'
+                """, legacyName);
+        String primaryKey = jdbcTemplate.queryForObject(
+                "select conname from pg_constraint where conrelid = to_regclass(?) and contype = 'p'",
+                String.class, legacyName);
+        jdbcTemplate.execute("alter table " + legacyName + " drop constraint " + primaryKey);
+        // The partition key has to be part of the primary key; ids are random UUIDs
+        jdbcTemplate.execute("alter table " + legacyName + " add constraint " + truncate(legacyName + "_pkey")
+                + " primary key using index " + CONVERSION_INDEX);
+
+        jdbcTemplate.execute("create table " + TABLE + " (like " + legacyName
+                + " including defaults including generated including storage including compression)"
+                + " partition by range (created_at)");
+        jdbcTemplate.execute("alter table " + TABLE + " add constraint " + primaryKey
+                + " primary key (id, created_at)");
+        for (String index : indexes) {
+            jdbcTemplate.execute(index);
+        }
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute("alter table " + TABLE + " add constraint " + foreignKey.get("name")
+                    + " " + foreignKey.get("definition"));
+        }
+        jdbcTemplate.execute("alter table " + TABLE + " attach partition " + legacyName
+                + " for values from (minvalue) to ('" + upperBound + "')");
+        jdbcTemplate.execute("alter table " + legacyName + " drop constraint " + BOUND_CHECK);
+    }
+
+    // Partitions ordered by range
+    public List<Partition> findPartitions() {
+        return jdbcTemplate.query("""
+                        select c.relname,
+                               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz
+                        from pg_inherits i
+                        join pg_class c on c.oid = i.inhrelid
+                        where i.inhparent = to_regclass(?)
+                        order by 2
+                        """,
+                (rs, row) -> new Partition(rs.getString(1), rs.getTimestamp(2).toInstant()),
+                TABLE);
+    }
+
+    // Lower bound of the oldest partition, before which every message has been retired; null while
+    // the oldest partition starts at MINVALUE (or the table has none)
+    public Instant findRetainedFrom() {
+        List<Instant> bounds = jdbcTemplate.query("""
+                        select (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz
+                        from pg_inherits i
+                        join pg_class c on c.oid = i.inhrelid
+                        where i.inhparent = to_regclass(?)
+                        order by (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz
+                        limit 1
+                        """,
+                (rs, row) -> rs.getTimestamp(1) == null ? null : rs.getTimestamp(1).toInstant(),
+                TABLE);
+        return bounds.isEmpty() ? null : bounds.get(0);
+    }
+
+    public void createMonth(YearMonth month) {
+        jdbcTemplate.execute("create table if not exists " + monthName(month) + " partition of " + TABLE
+                + " for values from ('" + start(month) + "') to ('" + start(month.plusMonths(1)) + "')");
+    }
+
+    public void drop(String partition) {
+        jdbcTemplate.execute("drop table " + partition);
+    }
+
+    // Detaches the partition into a standalone table. Its foreign keys are dropped so sessions can
+    // still be deleted; the archived rows keep their session_id.
+    public String detach(String partition, String archiveName, String tablespace) {
+        jdbcTemplate.execute("alter table " + TABLE + " detach partition " + partition);
+        for (String foreignKey : jdbcTemplate.queryForList(
+                "select conname from pg_constraint where conrelid = to_regclass(?) and contype = 'f'",
+                String.class, partition)) {
+            jdbcTemplate.execute("alter table " + partition + " drop constraint " + foreignKey);
+        }
+        jdbcTemplate.execute("alter table " + partition + " rename to " + archiveName);
+        if (tablespace != null && !tablespace.isBlank()) {
+            jdbcTemplate.execute("alter table " + archiveName + " set tablespace " + tablespace);
+        }
+        return archiveName;
+    }
+
+    public static String monthName(YearMonth month) {
+        return String.format("%s_p%04d_%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+
+    public static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static String truncate(String identifier) {
+        return identifier.length() > 63 ? identifier.substring(0, 63) : identifier;
+    }
+}
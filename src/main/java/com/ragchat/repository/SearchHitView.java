@@ -0,0 +1,22 @@
+package com.ragchat.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Row of ChatMessageRepository.search
+public interface SearchHitView {
+
+    String getType();
+
+    UUID getId();
+
+    UUID getSessionId();
+
+    String getSessionTitle();
+
+    Instant getCreatedAt();
+
+    float getRank();
+
+    String getSnippet();
+}
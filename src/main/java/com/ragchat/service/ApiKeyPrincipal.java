@@ -0,0 +1,34 @@
+package com.ragchat.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Authenticated caller. Built once per key on registry refresh, never per request.
+public record ApiKeyPrincipal(UUID keyId,
+                              String tenantId,
+                              Set<String> scopes,
+                              String tier,
+                              int requestsPerMinute,
+                              List<GrantedAuthority> authorities) {
+
+    public static final String SCOPE_READ = "read";
+    public static final String SCOPE_WRITE = "write";
+    // Actuator endpoints other than health, which expose per-tenant and internal metrics
+    public static final String SCOPE_METRICS = "metrics";
+
+    public static ApiKeyPrincipal of(UUID keyId, String tenantId, Set<String> scopes,
+                                     String tier, int requestsPerMinute) {
+        List<GrantedAuthority> authorities = scopes.stream()
+                .map(scope -> (GrantedAuthority) new SimpleGrantedAuthority("SCOPE_" + scope))
+                .toList();
+        return new ApiKeyPrincipal(keyId, tenantId, Set.copyOf(scopes), tier, requestsPerMinute, authorities);
+    }
+
+    public boolean hasScope(String scope) {
+        return scopes.contains(scope);
+    }
+}
@@ -0,0 +1,127 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ApiKey;
+import com.ragchat.repository.ApiKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// In-memory view of the api_keys table, keyed by SHA-256 of the key. Authentication is a hash and
+// a map lookup; the table is read once the application is ready and re-read in the background, so
+// revocations apply within one refresh. Requests never wait for a load: until the first one
+// succeeds every key is refused (see isLoaded), and a failed refresh keeps the last snapshot.
+@Component
+public class ApiKeyRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyRegistry.class);
+
+    private final ApiKeyRepository apiKeyRepository;
+    private final Environment environment;
+    private final String legacyApiKey;
+    private final String defaultTenant;
+    private final int defaultRequestsPerMinute;
+
+    private volatile Map<ByteBuffer, Entry> keys;
+
+    public ApiKeyRegistry(ApiKeyRepository apiKeyRepository,
+                          Environment environment,
+                          @Value("${security.api-key:}") String legacyApiKey,
+                          @Value("${security.default-tenant:default}") String defaultTenant,
+                          @Value("${rate-limiting.requests-per-minute:60}") int defaultRequestsPerMinute) {
+        this.apiKeyRepository = apiKeyRepository;
+        this.environment = environment;
+        this.legacyApiKey = legacyApiKey;
+        this.defaultTenant = defaultTenant;
+        this.defaultRequestsPerMinute = defaultRequestsPerMinute;
+    }
+
+    // Returns null for unknown or disabled keys, and for every key before the first load
+    public ApiKeyPrincipal authenticate(String presentedKey) {
+        Map<ByteBuffer, Entry> snapshot = keys;
+        if (snapshot == null) {
+            return null;
+        }
+        byte[] hash = sha256(presentedKey);
+        Entry entry = snapshot.get(ByteBuffer.wrap(hash));
+        // The map lookup already matched the hash; compare again in constant time so that the
+        // final decision never depends on an early-exit equals()
+        if (entry == null || !MessageDigest.isEqual(entry.hash, hash)) {
+            return null;
+        }
+        return entry.principal;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        refresh();
+    }
+
+    // False until the table has been read once
+    public boolean isLoaded() {
+        return keys != null;
+    }
+
+    @Scheduled(fixedDelayString = "${security.api-keys.refresh-interval:PT30S}",
+            initialDelayString = "${security.api-keys.refresh-interval:PT30S}")
+    public void refresh() {
+        try {
+            keys = load();
+        } catch (RuntimeException ex) {
+            // Keep serving the last good snapshot
+            log.warn("Failed to refresh API keys, keeping {} cached keys", keys == null ? 0 : keys.size(), ex);
+        }
+    }
+
+    private Map<ByteBuffer, Entry> load() {
+        Map<ByteBuffer, Entry> loaded = new HashMap<>();
+        for (ApiKey apiKey : apiKeyRepository.findByEnabledTrue()) {
+            Set<String> scopes = Arrays.stream(apiKey.getScopes().split(","))
+                    .map(String::trim)
+                    .filter(scope -> !scope.isEmpty())
+                    .collect(Collectors.toSet());
+            ApiKeyPrincipal principal = ApiKeyPrincipal.of(apiKey.getId(), apiKey.getTenantId(), scopes,
+                    apiKey.getTier(), requestsPerMinute(apiKey.getTier()));
+            loaded.put(ByteBuffer.wrap(apiKey.getKeyHash()), new Entry(apiKey.getKeyHash(), principal));
+        }
+        // security.api-key keeps working as a full-access key of the default tenant
+        if (legacyApiKey != null && !legacyApiKey.isBlank()) {
+            byte[] hash = sha256(legacyApiKey);
+            loaded.putIfAbsent(ByteBuffer.wrap(hash), new Entry(hash, ApiKeyPrincipal.of(
+                    UUID.nameUUIDFromBytes(hash), defaultTenant,
+                    Set.of(ApiKeyPrincipal.SCOPE_READ, ApiKeyPrincipal.SCOPE_WRITE, ApiKeyPrincipal.SCOPE_METRICS),
+                    "standard", requestsPerMinute("standard"))));
+        }
+        return Map.copyOf(loaded);
+    }
+
+    private int requestsPerMinute(String tier) {
+        return environment.getProperty("rate-limiting.tiers." + tier, Integer.class, defaultRequestsPerMinute);
+    }
+
+    static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private record Entry(byte[] hash, ApiKeyPrincipal principal) {
+    }
+}
@@ -1,32 +1,76 @@
 package com.ragchat.service;
 
 import com.ragchat.api.dto.AddMessageRequest;
+import com.ragchat.api.dto.BulkAddMessagesResponse;
+import com.ragchat.api.dto.BulkDeleteSessionsResponse;
+import com.ragchat.api.dto.BulkMessageItem;
+import com.ragchat.api.dto.BulkMessageResult;
 import com.ragchat.api.dto.ChatMessageResponse;
 import com.ragchat.api.dto.ChatSessionResponse;
 import com.ragchat.api.dto.CreateSessionRequest;
+import com.ragchat.api.dto.CursorPageResponse;
 import com.ragchat.domain.ChatMessage;
 import com.ragchat.domain.ChatSession;
 import com.ragchat.repository.ChatMessageRepository;
 import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
+// One chat.service timer per public method, tagged with the method name
+@Timed("chat.service")
 public class ChatService {
 
+    static final int MAX_CURSOR_PAGE_SIZE = 100;
+    static final int DEFAULT_SESSION_PAGE_SIZE = 20;
+    static final int PREVIEW_LENGTH = 200;
+    // Allowed difference between the clocks that stamped a session and its messages
+    static final Duration CLOCK_SKEW_SLACK = Duration.ofDays(1);
+    static final String ASSISTANT = "ASSISTANT";
+
     private final ChatSessionRepository sessionRepository;
     private final ChatMessageRepository messageRepository;
+    private final SessionCache sessionCache;
+    private final RecentMessagesBuffer recentMessages;
+    private final MessageWriteBehindQueue writeBehindQueue;
+    private final ContextChunkStore contextChunkStore;
+    private final ReplicaLagGuard replicaLagGuard;
+    private final VersionRegistry versionRegistry;
+    private final MessageStreams messageStreams;
+    private final SessionEvents sessionEvents;
 
-    public ChatService(ChatSessionRepository sessionRepository, ChatMessageRepository messageRepository) {
+    public ChatService(ChatSessionRepository sessionRepository, ChatMessageRepository messageRepository,
+                       SessionCache sessionCache, RecentMessagesBuffer recentMessages,
+                       MessageWriteBehindQueue writeBehindQueue, ContextChunkStore contextChunkStore,
+                       ReplicaLagGuard replicaLagGuard, VersionRegistry versionRegistry,
+                       MessageStreams messageStreams, SessionEvents sessionEvents) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
+        this.sessionCache = sessionCache;
+        this.recentMessages = recentMessages;
+        this.writeBehindQueue = writeBehindQueue;
+        this.contextChunkStore = contextChunkStore;
+        this.replicaLagGuard = replicaLagGuard;
+        this.versionRegistry = versionRegistry;
+        this.messageStreams = messageStreams;
+        this.sessionEvents = sessionEvents;
     }
 
     @Transactional
@@ -35,15 +79,44 @@ public class ChatService {
         session.setUserId(request.getUserId());
         session.setTitle(request.getTitle());
         ChatSession saved = sessionRepository.save(session);
+        sessionCache.put(saved);
+        recordWrite(saved.getUserId(), saved.getId());
         return toSessionResponse(saved);
     }
 
     @Transactional(readOnly = true)
     public List<ChatSessionResponse> listSessions(String userId) {
-        return sessionRepository.findByUserIdOrderByUpdatedAtDesc(userId)
-                .stream()
-                .map(this::toSessionResponse)
-                .collect(Collectors.toList());
+        replicaLagGuard.beforeRead(userId, null);
+        return sessionRepository.findByUserId(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ChatSessionResponse> listSessionsByCursor(String userId, boolean favoritesOnly,
+                                                                        String cursor, Integer limit) {
+        replicaLagGuard.beforeRead(userId, null);
+        int size = Math.max(1, Math.min(limit != null ? limit : DEFAULT_SESSION_PAGE_SIZE, MAX_CURSOR_PAGE_SIZE));
+        Pageable window = PageRequest.of(0, size + 1);
+
+        List<ChatSessionResponse> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = favoritesOnly
+                    ? sessionRepository.findFavoritesByUserId(userId, window)
+                    : sessionRepository.findByUserId(userId, window);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            rows = favoritesOnly
+                    ? sessionRepository.findFavoritesByUserIdAfter(userId, position.timestamp(), position.id(), window)
+                    : sessionRepository.findByUserIdAfter(userId, position.timestamp(), position.id(), window);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<ChatSessionResponse> page = rows.subList(0, Math.min(size, rows.size()));
+        String next = null;
+        if (hasMore) {
+            ChatSessionResponse last = page.get(page.size() - 1);
+            next = new Cursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+        return new CursorPageResponse<>(new ArrayList<>(page), next, null);
     }
 
     @Transactional
@@ -51,6 +124,8 @@ public class ChatService {
         ChatSession session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
         session.setTitle(title);
+        sessionCache.evict(sessionId);
+        recordWrite(session.getUserId(), sessionId);
         return toSessionResponse(session);
     }
 
@@ -59,15 +134,35 @@ public class ChatService {
         ChatSession session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
         session.setFavorite(favorite);
+        sessionCache.evict(sessionId);
+        recordWrite(session.getUserId(), sessionId);
         return toSessionResponse(session);
     }
 
+    // Tombstones the session, which hides it at once; SessionPurger deletes its messages in batches
     @Transactional
     public void deleteSession(UUID sessionId) {
-        if (!sessionRepository.existsById(sessionId)) {
+        recordWrites(List.of(sessionId));
+        if (sessionRepository.markDeleted(List.of(sessionId), OffsetDateTime.now()) == 0) {
             throw new ResourceNotFoundException("Session not found");
         }
-        sessionRepository.deleteById(sessionId);
+        sessionCache.evict(sessionId);
+        recentMessages.invalidate(sessionId);
+    }
+
+    // Set-based variant of deleteSession; unknown and already deleted ids are not counted
+    @Transactional
+    public BulkDeleteSessionsResponse deleteSessions(Collection<UUID> sessionIds) {
+        Set<UUID> requested = new HashSet<>(sessionIds);
+        recordWrites(requested);
+        int deleted = sessionRepository.markDeleted(requested, OffsetDateTime.now());
+        requested.forEach(sessionCache::evict);
+        recentMessages.invalidateAll(requested);
+
+        BulkDeleteSessionsResponse response = new BulkDeleteSessionsResponse();
+        response.setDeleted(deleted);
+        response.setNotFound(requested.size() - deleted);
+        return response;
     }
 
     @Transactional
@@ -85,32 +180,354 @@ public class ChatService {
 
             session.setTitle(title);
             session = sessionRepository.save(session);
+            sessionCache.put(session);
+            recordWrite(session.getUserId(), session.getId());
         } else {
-            session = sessionRepository.findById(sessionId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
+            // On a cache hit the session is only referenced, so the append is a single INSERT
+            SessionMetadata metadata = sessionCache.require(sessionId);
+            session = sessionRepository.getReferenceById(sessionId);
+            recordWrite(metadata.userId(), sessionId);
         }
 
         ChatMessage message = new ChatMessage();
         message.setSession(session);
         message.setSender(request.getSender());
         message.setContent(request.getContent());
-        message.setContext(request.getContext());
+        storeContext(contextChunkStore, message, request.getContext());
 
         ChatMessage saved = messageRepository.save(message);
+        contextChunkStore.recordReferences(List.of(saved));
+        recordActivity(sessionRepository, List.of(session.getId()), List.of(saved));
 
-        return toMessageResponse(saved);
+        ChatMessageResponse response = toMessageResponse(saved);
+        sessionEvents.publishAfterCommit(session.getId(), SessionEvents.MESSAGE_CREATED, toMessageResponse(saved));
+        response.setContext(request.getContext());
+        recentMessages.append(session.getId(), response);
+        return response;
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehindQueue.isEnabled();
+    }
+
+    // Write-behind variant of addMessage for existing sessions: the id is assigned here and the row
+    // is persisted later by MessageWriteBehindQueue in a batched transaction, which also stamps
+    // createdAt. The response therefore carries no timestamp.
+    public ChatMessageResponse enqueueMessage(UUID sessionId, AddMessageRequest request) {
+        SessionMetadata metadata = sessionCache.require(sessionId);
+        // The ETag versions are bumped once the queue has persisted the message
+        replicaLagGuard.recordWrite(metadata.userId(), sessionId);
+
+        MessageWriteBehindQueue.PendingMessage pending = new MessageWriteBehindQueue.PendingMessage(
+                UUID.randomUUID(),
+                sessionId,
+                metadata.userId(),
+                request.getSender(),
+                request.getContent(),
+                request.getContext());
+
+        if (!writeBehindQueue.submit(pending)) {
+            throw new WriteQueueFullException("Message queue is full, retry shortly");
+        }
+
+        // message.created is published by the queue once the batch commits
+        ChatMessageResponse response = new ChatMessageResponse();
+        response.setId(pending.id());
+        response.setSender(pending.sender());
+        response.setContent(pending.content());
+        response.setContext(pending.context());
+        return response;
+    }
+
+    @Transactional
+    public BulkAddMessagesResponse addMessages(List<BulkMessageItem> items) {
+        // One existence query for all distinct sessions instead of a findById per message
+        Set<UUID> requested = new HashSet<>();
+        for (BulkMessageItem item : items) {
+            requested.add(item.getSessionId());
+        }
+        Set<UUID> existing = new HashSet<>();
+        Set<UUID> unknown = new HashSet<>();
+        for (UUID id : requested) {
+            (sessionCache.contains(id) ? existing : unknown).add(id);
+        }
+        if (!unknown.isEmpty()) {
+            existing.addAll(sessionRepository.findExistingIds(unknown));
+        }
+
+        List<ChatMessage> messages = new ArrayList<>(items.size());
+        List<UUID> sessionIds = new ArrayList<>(items.size());
+        List<BulkMessageResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            BulkMessageItem item = items.get(i);
+            BulkMessageResult result = new BulkMessageResult();
+            result.setIndex(i);
+            results.add(result);
+
+            if (!existing.contains(item.getSessionId())) {
+                result.setStatus(BulkMessageResult.SESSION_NOT_FOUND);
+                continue;
+            }
+
+            ChatMessage message = new ChatMessage();
+            message.setSession(sessionRepository.getReferenceById(item.getSessionId()));
+            message.setSender(item.getSender());
+            message.setContent(item.getContent());
+            storeContext(contextChunkStore, message, item.getContext());
+            messages.add(message);
+            sessionIds.add(item.getSessionId());
+            result.setStatus(BulkMessageResult.CREATED);
+        }
+
+        // Inserts are flushed as JDBC batches (hibernate.jdbc.batch_size) at commit
+        messageRepository.saveAll(messages);
+        contextChunkStore.recordReferences(messages);
+        recordActivity(sessionRepository, sessionIds, messages);
+        recordWrites(existing);
+        recentMessages.invalidateAll(existing);
+
+        int created = 0;
+        for (BulkMessageResult result : results) {
+            if (BulkMessageResult.CREATED.equals(result.getStatus())) {
+                ChatMessage saved = messages.get(created++);
+                result.setId(saved.getId());
+                result.setCreatedAt(saved.getCreatedAt());
+                sessionEvents.publishAfterCommit(saved.getSession().getId(), SessionEvents.MESSAGE_CREATED,
+                        toMessageResponse(saved));
+            }
+        }
+
+        BulkAddMessagesResponse response = new BulkAddMessagesResponse();
+        response.setCreated(created);
+        response.setFailed(items.size() - created);
+        response.setResults(results);
+        return response;
+    }
+
+    // Throws ResourceNotFoundException unless the session exists; answered from the session cache
+    // when it holds the session
+    public void requireSession(UUID sessionId) {
+        sessionCache.require(sessionId);
     }
 
     @Transactional(readOnly = true)
-    public Page<ChatMessageResponse> getMessages(UUID sessionId, int page, int size) {
-        ChatSession session = sessionRepository.findById(sessionId)
-                .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
+    public Page<ChatMessageResponse> getMessages(UUID sessionId, int page, int size, boolean includeContext) {
+        replicaLagGuard.beforeRead(null, sessionId);
+        OffsetDateTime since = messagesSince(sessionCache.require(sessionId));
         Pageable pageable = PageRequest.of(page, size);
-        return messageRepository.findBySessionOrderByCreatedAtAsc(session, pageable)
-                .map(this::toMessageResponse);
+        Page<ChatMessageResponse> messages = messageRepository.findPage(sessionId, since, pageable);
+        if (includeContext) {
+            contextChunkStore.attachContexts(messages.getContent());
+        }
+        return messages;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ChatMessageResponse> getMessagesByCursor(UUID sessionId, String after,
+                                                                       String before, int size,
+                                                                       boolean includeContext) {
+        replicaLagGuard.beforeRead(null, sessionId);
+        if (after != null && before != null) {
+            throw new InvalidRequestException("Only one of 'after' or 'before' may be supplied");
+        }
+        OffsetDateTime since = messagesSince(sessionCache.require(sessionId));
+
+        int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        // Fetch one extra row to learn whether another page exists without a count query
+        Pageable window = PageRequest.of(0, limit + 1);
+
+        if (before != null) {
+            List<ChatMessageResponse> rows;
+            if (before.isBlank()) {
+                rows = messageRepository.findNewest(sessionId, since, window);
+            } else {
+                Cursor cursor = Cursor.decode(before);
+                rows = messageRepository.findBefore(sessionId, since, cursor.timestamp(), cursor.id(), window);
+            }
+            boolean hasMore = rows.size() > limit;
+            List<ChatMessageResponse> page = new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+            Collections.reverse(page);
+
+            String previous = hasMore ? cursorOf(page.get(0)) : null;
+            String next = !page.isEmpty() && !before.isBlank() ? cursorOf(page.get(page.size() - 1)) : null;
+            return new CursorPageResponse<>(withContexts(page, includeContext), next, previous);
+        }
+
+        List<ChatMessageResponse> rows;
+        if (after == null || after.isBlank()) {
+            rows = messageRepository.findOldest(sessionId, since, window);
+        } else {
+            // The cursor itself bounds created_at
+            Cursor cursor = Cursor.decode(after);
+            rows = messageRepository.findAfter(sessionId, cursor.timestamp(), cursor.id(), window);
+        }
+        boolean hasMore = rows.size() > limit;
+        List<ChatMessageResponse> page = new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+
+        String next = hasMore ? cursorOf(page.get(page.size() - 1)) : null;
+        String previous = !page.isEmpty() && after != null && !after.isBlank() ? cursorOf(page.get(0)) : null;
+        return new CursorPageResponse<>(withContexts(page, includeContext), next, previous);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ChatMessageResponse> getRecentMessages(UUID sessionId, int n) {
+        replicaLagGuard.beforeRead(null, sessionId);
+        OffsetDateTime since = messagesSince(sessionCache.require(sessionId));
+        int count = Math.max(1, Math.min(n, recentMessages.capacity()));
+        return recentMessages.tail(sessionId, since, count);
+    }
+
+    // Opens an assistant message whose content arrives in pieces through appendToMessageStream.
+    // Nothing is written until completeMessageStream stores the whole message as one row.
+    public ChatMessageResponse openMessageStream(UUID sessionId) {
+        SessionMetadata metadata = sessionCache.require(sessionId);
+        MessageStreams.Snapshot stream = messageStreams.open(sessionId, metadata.userId(), ASSISTANT);
+        sessionEvents.publish(sessionId, SessionEvents.STREAM_STARTED, stream);
+
+        ChatMessageResponse dto = new ChatMessageResponse();
+        dto.setId(stream.id());
+        dto.setSender(stream.sender());
+        dto.setContent(stream.content());
+        dto.setCreatedAt(stream.startedAt());
+        return dto;
+    }
+
+    // Appends in memory and fans the delta out to the session's subscribers
+    public void appendToMessageStream(UUID sessionId, UUID messageId, String content) {
+        messageStreams.append(sessionId, messageId, content,
+                delta -> sessionEvents.publish(sessionId, SessionEvents.STREAM_DELTA, delta));
+    }
+
+    @Transactional
+    public ChatMessageResponse completeMessageStream(UUID sessionId, UUID messageId, String context) {
+        sessionCache.require(sessionId);
+        MessageStreams.Snapshot stream = messageStreams.complete(sessionId, messageId);
+
+        ChatMessage message = new ChatMessage();
+        message.setId(stream.id());
+        message.setSession(sessionRepository.getReferenceById(sessionId));
+        message.setSender(stream.sender());
+        message.setContent(stream.content());
+        // Stamped at completion rather than at open, so the message sorts after anything a cursor
+        // reader may already have paged past
+        message.setCreatedAt(OffsetDateTime.now());
+        storeContext(contextChunkStore, message, context);
+
+        ChatMessage saved = messageRepository.save(message);
+        contextChunkStore.recordReferences(List.of(saved));
+        recordActivity(sessionRepository, List.of(sessionId), List.of(saved));
+        recordWrite(stream.userId(), sessionId);
+        sessionEvents.publishAfterCommit(sessionId, SessionEvents.STREAM_COMPLETED, toMessageResponse(saved));
+
+        ChatMessageResponse response = toMessageResponse(saved);
+        response.setContext(context);
+        recentMessages.append(sessionId, response);
+        return response;
+    }
+
+    // Drops an open stream without writing it, e.g. one whose producer went away before sending
+    // content. Returns false if the stream had already been completed or dropped.
+    public boolean abortMessageStream(UUID sessionId, UUID messageId) {
+        if (!messageStreams.discard(sessionId, messageId)) {
+            return false;
+        }
+        sessionEvents.publish(sessionId, SessionEvents.STREAM_ABORTED, messageId);
+        return true;
+    }
+
+    // Subscribes to the session's events, then replays its open streams as message.started so a
+    // subscriber joining mid-stream gets the content so far. onDropped runs if the subscriber falls
+    // too far behind. Returns the action that unsubscribes.
+    public Runnable subscribeToEvents(UUID sessionId, Consumer<SessionEvents.Event> listener,
+                                      Runnable onDropped) {
+        sessionCache.require(sessionId);
+        return sessionEvents.subscribe(sessionId, listener, onDropped, () ->
+                messageStreams.openIn(sessionId).stream()
+                        .map(stream -> new SessionEvents.Event(SessionEvents.STREAM_STARTED, stream))
+                        .toList());
+    }
+
+    // Lower bound on the created_at of a session's messages; passing it to message queries limits
+    // them to the partitions from the session's month on
+    static OffsetDateTime messagesSince(SessionMetadata session) {
+        return session.createdAt().minus(CLOCK_SKEW_SLACK);
+    }
+
+    private static String cursorOf(ChatMessageResponse message) {
+        return new Cursor(message.getCreatedAt(), message.getId()).encode();
+    }
+
+    private List<ChatMessageResponse> withContexts(List<ChatMessageResponse> messages, boolean includeContext) {
+        if (includeContext) {
+            contextChunkStore.attachContexts(messages);
+        }
+        return messages;
+    }
+
+    static void storeContext(ContextChunkStore store, ChatMessage message, String context) {
+        if (context == null) {
+            return;
+        }
+        ContextChunkStore.StoredContext stored = store.write(context);
+        message.setStoredContext(stored.recipe(), stored.chunks());
+    }
+
+    // Feeds the replica lag guard and the ETag versions of the user's session list and the session
+    private void recordWrite(String userId, UUID sessionId) {
+        replicaLagGuard.recordWrite(userId, sessionId);
+        versionRegistry.recordWrite(userId, sessionId);
+    }
+
+    // recordWrite for sessions identified only by id. Owners of sessions that are not cached are
+    // looked up in one query, so this must run before the sessions are tombstoned.
+    private void recordWrites(Collection<UUID> sessionIds) {
+        Set<String> userIds = new HashSet<>();
+        List<UUID> uncached = new ArrayList<>();
+        for (UUID sessionId : sessionIds) {
+            SessionMetadata metadata = sessionCache.getIfPresent(sessionId);
+            if (metadata == null) {
+                uncached.add(sessionId);
+            } else {
+                userIds.add(metadata.userId());
+            }
+            recordWrite(null, sessionId);
+        }
+        if (!uncached.isEmpty()) {
+            userIds.addAll(sessionRepository.findUserIds(uncached));
+        }
+        userIds.forEach(userId -> recordWrite(userId, null));
+    }
+
+    // Updates the activity columns of the sessions the messages were appended to (sessionIds[i] is
+    // the session of messages[i]), one statement per session. Sessions are updated in id order so
+    // concurrent batches cannot deadlock on them. Throws if a session was deleted meanwhile, which
+    // rolls the append back: the session cache may take a while to learn of another instance's
+    // delete, and the foreign key still accepts a tombstoned session.
+    static void recordActivity(ChatSessionRepository sessionRepository, List<UUID> sessionIds,
+                               List<ChatMessage> messages) {
+        Map<UUID, List<ChatMessage>> bySession = new TreeMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            bySession.computeIfAbsent(sessionIds.get(i), id -> new ArrayList<>()).add(messages.get(i));
+        }
+        for (Map.Entry<UUID, List<ChatMessage>> entry : bySession.entrySet()) {
+            // Within a batch, messages are in append order
+            ChatMessage last = entry.getValue().get(entry.getValue().size() - 1);
+            if (sessionRepository.recordMessages(entry.getKey(), entry.getValue().size(), last.getCreatedAt(),
+                    last.getSender(), preview(last.getContent())) == 0) {
+                throw new ResourceNotFoundException("Session not found");
+            }
+        }
+    }
+
+    static String preview(String content) {
+        if (content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        int end = Character.isHighSurrogate(content.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return content.substring(0, end);
     }
 
-    private ChatSessionResponse toSessionResponse(ChatSession session) {
+    static ChatSessionResponse toSessionResponse(ChatSession session) {
         ChatSessionResponse dto = new ChatSessionResponse();
         dto.setId(session.getId());
         dto.setUserId(session.getUserId());
@@ -118,15 +535,19 @@ public class ChatService {
         dto.setFavorite(session.isFavorite());
         dto.setCreatedAt(session.getCreatedAt());
         dto.setUpdatedAt(session.getUpdatedAt());
+        dto.setLastMessageAt(session.getLastMessageAt());
+        dto.setMessageCount(session.getMessageCount());
+        dto.setLastSender(session.getLastSender());
+        dto.setLastMessagePreview(session.getLastMessagePreview());
         return dto;
     }
 
-    private ChatMessageResponse toMessageResponse(ChatMessage message) {
+    // Leaves context unset: it is lazy and stored as chunks, see ContextChunkStore.attachContexts
+    static ChatMessageResponse toMessageResponse(ChatMessage message) {
         ChatMessageResponse dto = new ChatMessageResponse();
         dto.setId(message.getId());
         dto.setSender(message.getSender());
         dto.setContent(message.getContent());
-        dto.setContext(message.getContext());
         dto.setCreatedAt(message.getCreatedAt());
         return dto;
     }
@@ -0,0 +1,85 @@
+package com.ragchat.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Content-defined chunking (FastCDC with normalized chunking). Cut points depend on the bytes
+// around them rather than on offsets, so a retrieved document shared by two contexts yields the
+// same chunks even when it sits at a different position or the surrounding JSON differs.
+// The gear table and masks are part of the storage format: changing them stops new chunks from
+// deduplicating against stored ones (old chunks stay readable).
+public final class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // splitmix64 with a fixed seed, so every replica and release cuts at the same points
+        long state = 0x5EEDC0DEC0FFEEL;
+        for (int i = 0; i < GEAR.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize) {
+            throw new IllegalArgumentException("Expected 0 < min <= average <= max chunk size");
+        }
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        // Harder to match before the average size, easier after it: sizes cluster around the average
+        this.maskSmall = highBits(bits + 1);
+        this.maskLarge = highBits(bits - 1);
+    }
+
+    // Returns the end offset (exclusive) of every chunk; the last one is data.length
+    public List<Integer> cutPoints(byte[] data) {
+        List<Integer> cuts = new ArrayList<>(data.length / averageSize + 1);
+        int start = 0;
+        while (start < data.length) {
+            start += nextChunkLength(data, start);
+            cuts.add(start);
+        }
+        return cuts;
+    }
+
+    private int nextChunkLength(byte[] data, int start) {
+        int remaining = data.length - start;
+        if (remaining <= minSize) {
+            return remaining;
+        }
+        int limit = Math.min(remaining, maxSize);
+        int normal = Math.min(limit, averageSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[start + i] & 0xFF];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[start + i] & 0xFF];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    // The gear hash mixes best in its high bits
+    private static long highBits(int count) {
+        return count <= 0 ? 0 : -1L << (64 - count);
+    }
+}
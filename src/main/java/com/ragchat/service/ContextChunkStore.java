@@ -0,0 +1,294 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.MessageContextView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Content-addressed store for message context. A context is split into chunks (see ContextRecipe)
+// and each distinct chunk is stored once in context_chunks, keyed by its SHA-256; the message only
+// keeps the recipe and the chunk hashes. The same retrieved passages recur across many messages,
+// so most writes only reference chunks this replica already knows to exist and issue no chunk
+// statement at all, and reads are served from a cache of hot chunks.
+@Component
+public class ContextChunkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextChunkStore.class);
+
+    // Orders upserts so that concurrent writers lock shared chunks in the same order
+    private static final Comparator<ContextRecipe.Part> BY_HASH =
+            (a, b) -> Arrays.compareUnsigned(a.hash(), b.hash());
+
+    // Recipe and chunk hashes as stored on the message, see ChatMessage.setStoredContext
+    public record StoredContext(byte[] recipe, byte[] chunks) {
+    }
+
+    private final ContextChunkRepository chunkRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ContextCodec codec;
+    private final Duration freshenAfter;
+    private final Duration sweepGrace;
+
+    // Chunks known to exist, with the last_used_at this replica last saw or set
+    private final Cache<ByteBuffer, Instant> knownChunks;
+    // Uncompressed chunk bytes for reads
+    private final Cache<ByteBuffer, byte[]> hotChunks;
+
+    private final Counter chunksWritten;
+    private final Counter chunksReused;
+
+    public ContextChunkStore(ContextChunkRepository chunkRepository,
+                             ChatMessageRepository messageRepository,
+                             ContextCodec codec,
+                             @Value("${context-chunks.known-chunks-max-size:200000}") long knownChunksMaxSize,
+                             @Value("${context-chunks.cache-max-memory-mb:64}") long cacheMaxMemoryMb,
+                             @Value("${context-chunks.freshen-after:P1D}") Duration freshenAfter,
+                             @Value("${context-chunks.sweep.grace:P7D}") Duration sweepGrace,
+                             MeterRegistry meterRegistry) {
+        if (sweepGrace.compareTo(freshenAfter.multipliedBy(2)) < 0) {
+            // A chunk in use could otherwise look unused to the sweeper
+            throw new IllegalArgumentException("context-chunks.sweep.grace must be at least twice freshen-after");
+        }
+        this.chunkRepository = chunkRepository;
+        this.messageRepository = messageRepository;
+        this.codec = codec;
+        this.freshenAfter = freshenAfter;
+        this.sweepGrace = sweepGrace;
+        this.knownChunks = Caffeine.newBuilder()
+                .maximumSize(knownChunksMaxSize)
+                .build();
+        this.hotChunks = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxMemoryMb * 1024 * 1024)
+                .weigher((ByteBuffer hash, byte[] chunk) -> chunk.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hotChunks, "contextChunkCache");
+        this.chunksWritten = Counter.builder("context.chunks.written")
+                .description("Context chunks stored for the first time")
+                .register(meterRegistry);
+        this.chunksReused = Counter.builder("context.chunks.reused")
+                .description("Context chunk references to chunks already stored")
+                .register(meterRegistry);
+    }
+
+    // Stores the chunks of the context that are not known to exist yet and returns what the
+    // message keeps. Must run in the transaction that saves the message.
+    public StoredContext write(String context) {
+        ContextRecipe recipe = ContextRecipe.split(context.getBytes(StandardCharsets.UTF_8));
+
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(freshenAfter);
+        Map<ByteBuffer, ContextRecipe.Part> unknown = new LinkedHashMap<>();
+        int reused = 0;
+        for (ContextRecipe.Part part : recipe.parts()) {
+            if (!part.isChunk()) {
+                continue;
+            }
+            Instant lastUsed = knownChunks.getIfPresent(part.key());
+            if (lastUsed != null && lastUsed.isAfter(staleBefore)) {
+                reused++;
+            } else {
+                unknown.putIfAbsent(part.key(), part);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            Map<ByteBuffer, Instant> existing = chunkRepository.findLastUsed(
+                    unknown.values().stream().map(ContextRecipe.Part::hash).toList());
+            Map<ByteBuffer, Instant> learned = new HashMap<>();
+            List<ContextRecipe.Part> upserts = new ArrayList<>();
+            for (Map.Entry<ByteBuffer, ContextRecipe.Part> entry : unknown.entrySet()) {
+                Instant lastUsed = existing.get(entry.getKey());
+                if (lastUsed != null && lastUsed.isAfter(staleBefore)) {
+                    learned.put(entry.getKey(), lastUsed);
+                    reused++;
+                } else {
+                    // New, or not marked used for a while and so heading for the sweeper
+                    upserts.add(entry.getValue());
+                    learned.put(entry.getKey(), now);
+                    if (lastUsed == null) {
+                        chunksWritten.increment();
+                    } else {
+                        reused++;
+                    }
+                }
+            }
+            if (!upserts.isEmpty()) {
+                upserts.sort(BY_HASH);
+                List<ContextChunkRepository.NewChunk> chunks = new ArrayList<>(upserts.size());
+                for (ContextRecipe.Part part : upserts) {
+                    byte[] raw = part.chunk();
+                    chunks.add(new ContextChunkRepository.NewChunk(part.hash(), codec.compressBytes(raw), raw.length));
+                }
+                chunkRepository.upsert(chunks);
+            }
+            // Only remembered once the chunks are committed
+            afterCommit(() -> knownChunks.putAll(learned));
+        }
+        chunksReused.increment(reused);
+
+        byte[] hashes = recipe.chunkHashes();
+        return new StoredContext(codec.compressBytes(recipe.encode()), hashes.length > 0 ? hashes : null);
+    }
+
+    // Records the chunks the saved messages reference, in one statement. Must run in the transaction
+    // that saves them, after their ids and createdAt are set.
+    public void recordReferences(List<ChatMessage> messages) {
+        List<ContextChunkRepository.Reference> references = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            references.addAll(references(message.getId(), message.getCreatedAt().toInstant(),
+                    message.getContextChunks()));
+        }
+        addReferences(references);
+    }
+
+    public void addReferences(List<ContextChunkRepository.Reference> references) {
+        if (!references.isEmpty()) {
+            chunkRepository.addReferences(references);
+        }
+    }
+
+    // One reference per distinct chunk of a message's stored chunk hashes (may be null)
+    public static List<ContextChunkRepository.Reference> references(UUID messageId, Instant createdAt,
+                                                                    byte[] chunks) {
+        if (chunks == null) {
+            return List.of();
+        }
+        Map<ByteBuffer, ContextChunkRepository.Reference> distinct = new LinkedHashMap<>();
+        for (int offset = 0; offset < chunks.length; offset += ContextRecipe.HASH_BYTES) {
+            byte[] hash = Arrays.copyOfRange(chunks, offset, offset + ContextRecipe.HASH_BYTES);
+            distinct.putIfAbsent(ByteBuffer.wrap(hash),
+                    new ContextChunkRepository.Reference(hash, messageId, createdAt));
+        }
+        return List.copyOf(distinct.values());
+    }
+
+    // Reassembles the contexts of the messages with one query for the messages and at most one for
+    // the chunks missing from the cache
+    public void attachContexts(List<ChatMessageResponse> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<UUID, ChatMessageResponse> byId = new HashMap<>();
+        OffsetDateTime from = messages.get(0).getCreatedAt();
+        OffsetDateTime to = from;
+        for (ChatMessageResponse message : messages) {
+            byId.put(message.getId(), message);
+            from = message.getCreatedAt().isBefore(from) ? message.getCreatedAt() : from;
+            to = message.getCreatedAt().isAfter(to) ? message.getCreatedAt() : to;
+        }
+        // The page's time range keeps the lookup to the partitions that hold it
+        List<MessageContextView> rows = messageRepository.findContexts(byId.keySet(), from, to);
+
+        Map<UUID, ContextRecipe> recipes = new HashMap<>();
+        Map<ByteBuffer, byte[]> chunks = new HashMap<>();
+        Map<ByteBuffer, byte[]> missing = new HashMap<>();
+        for (MessageContextView row : rows) {
+            if (row.getContextRecipe() == null) {
+                byId.get(row.getId()).setContext(row.getCompressedContext() != null
+                        ? row.getCompressedContext()
+                        : row.getLegacyContext());
+                continue;
+            }
+            ContextRecipe recipe = ContextRecipe.decode(codec.decompressBytes(row.getContextRecipe()),
+                    row.getContextChunks());
+            recipes.put(row.getId(), recipe);
+            for (ContextRecipe.Part part : recipe.parts()) {
+                if (!part.isChunk() || chunks.containsKey(part.key())) {
+                    continue;
+                }
+                byte[] cached = hotChunks.getIfPresent(part.key());
+                if (cached != null) {
+                    chunks.put(part.key(), cached);
+                } else {
+                    missing.put(part.key(), part.hash());
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Map.Entry<ByteBuffer, byte[]> entry : chunkRepository.findData(missing.values()).entrySet()) {
+                byte[] chunk = codec.decompressBytes(entry.getValue());
+                chunks.put(entry.getKey(), chunk);
+                hotChunks.put(entry.getKey(), chunk);
+            }
+        }
+
+        for (Map.Entry<UUID, ContextRecipe> entry : recipes.entrySet()) {
+            byId.get(entry.getKey()).setContext(assemble(entry.getValue(), chunks));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${context-chunks.sweep.interval:PT6H}",
+            initialDelayString = "${context-chunks.sweep.initial-delay:PT10M}")
+    public void sweep() {
+        try {
+            int deleted = chunkRepository.sweep(Instant.now().minus(sweepGrace));
+            if (deleted > 0) {
+                log.info("Deleted {} unreferenced context chunks", deleted);
+            }
+        } catch (RuntimeException ex) {
+            // Retried on the next run
+            log.warn("Context chunk sweep failed", ex);
+        }
+    }
+
+    private static String assemble(ContextRecipe recipe, Map<ByteBuffer, byte[]> chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ContextRecipe.Part part : recipe.parts()) {
+            if (!part.isChunk()) {
+                out.writeBytes(part.literal());
+                continue;
+            }
+            byte[] chunk = chunks.get(part.key());
+            if (chunk == null) {
+                throw new IllegalStateException(
+                        "Missing context chunk " + HexFormat.of().formatHex(part.hash()));
+            }
+            out.writeBytes(chunk);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.ragchat.service;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.ragchat.domain.ContextDictionary;
+import com.ragchat.repository.ContextDictionaryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// zstd codec for message context (chunk store recipes and chunks, and the whole contexts written
+// before it). New values are compressed with the newest trained dictionary
+// (plain zstd until one exists); a frame names its dictionary in its header, so values written
+// with older dictionaries stay readable. Dictionaries are shared by all replicas through the
+// context_dictionaries table.
+@Component
+public class ContextCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextCodec.class);
+
+    private final ContextDictionaryRepository dictionaryRepository;
+    private final TransactionTemplate loadTransaction;
+    private final int level;
+    private final int dictionarySize;
+
+    private final Counter rawBytes;
+    private final Counter compressedBytes;
+
+    private volatile Dictionaries dictionaries;
+
+    // The converter, and so this codec, is created while the EntityManagerFactory is being built;
+    // the repository and transaction manager depend on that factory and are resolved on first use
+    public ContextCodec(@Lazy ContextDictionaryRepository dictionaryRepository,
+                        @Value("${context-compression.level:3}") int level,
+                        @Value("${context-compression.dictionary-size-kb:112}") int dictionarySizeKb,
+                        @Lazy PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        this.dictionaryRepository = dictionaryRepository;
+        // Dictionaries may be (re)loaded while Hibernate is materialising a message; read them on
+        // a separate connection rather than inside the caller's transaction
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+        this.level = level;
+        this.dictionarySize = dictionarySizeKb * 1024;
+        this.rawBytes = Counter.builder("context.compression.raw.bytes")
+                .baseUnit("bytes")
+                .description("Context bytes before compression")
+                .register(meterRegistry);
+        this.compressedBytes = Counter.builder("context.compression.compressed.bytes")
+                .baseUnit("bytes")
+                .description("Context bytes after compression")
+                .register(meterRegistry);
+    }
+
+    public byte[] compress(String context) {
+        return context != null ? compressBytes(context.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    public byte[] compressBytes(byte[] raw) {
+        Dictionary current = dictionaries().current;
+        byte[] compressed = current != null
+                ? Zstd.compress(raw, current.compress)
+                : Zstd.compress(raw, level);
+        rawBytes.increment(raw.length);
+        compressedBytes.increment(compressed.length);
+        return compressed;
+    }
+
+    public String decompress(byte[] frame) {
+        return frame != null ? new String(decompressBytes(frame), StandardCharsets.UTF_8) : null;
+    }
+
+    public byte[] decompressBytes(byte[] frame) {
+        int size = (int) Zstd.getFrameContentSize(frame);
+        long dictionaryId = Zstd.getDictIdFromFrame(frame);
+        return dictionaryId == 0
+                ? Zstd.decompress(frame, size)
+                : Zstd.decompress(frame, dictionary(dictionaryId).decompress, size);
+    }
+
+    public boolean hasDictionary() {
+        return dictionaries().current != null;
+    }
+
+    // Trains a dictionary on the samples and makes it the one used for new values.
+    // Returns null when zstd cannot build a useful dictionary from them.
+    public ContextDictionary train(List<byte[]> samples) {
+        int total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer(total, dictionarySize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+
+        byte[] content;
+        try {
+            content = trainer.trainSamples();
+        } catch (RuntimeException ex) {
+            log.warn("Could not train a context dictionary from {} samples", samples.size(), ex);
+            return null;
+        }
+        long id = Zstd.getDictIdFromDict(content);
+        if (id == 0 || dictionaryRepository.existsById(id)) {
+            // A replaced dictionary would make every frame written with it unreadable
+            log.warn("Discarding trained context dictionary with unusable id {}", id);
+            return null;
+        }
+
+        ContextDictionary dictionary = new ContextDictionary();
+        dictionary.setId(id);
+        dictionary.setContent(content);
+        dictionary.setSampleCount(samples.size());
+        ContextDictionary saved = dictionaryRepository.save(dictionary);
+        refresh();
+        log.info("Trained context dictionary {} ({} bytes) from {} samples", id, content.length, samples.size());
+        return saved;
+    }
+
+    // Picks up dictionaries trained by other replicas
+    public synchronized void refresh() {
+        Dictionaries previous = dictionaries;
+        Map<Long, Dictionary> byId = new HashMap<>();
+        Dictionary current = null;
+        List<ContextDictionary> rows =
+                loadTransaction.execute(status -> dictionaryRepository.findAllByOrderByCreatedAtAsc());
+        for (ContextDictionary row : rows) {
+            Dictionary known = previous != null ? previous.byId.get(row.getId()) : null;
+            current = known != null ? known : new Dictionary(
+                    new ZstdDictCompress(row.getContent(), level),
+                    new ZstdDictDecompress(row.getContent()));
+            byId.put(row.getId(), current);
+        }
+        dictionaries = new Dictionaries(Map.copyOf(byId), current);
+    }
+
+    // Loaded on first use rather than at startup, so the context can start before the table exists
+    private Dictionaries dictionaries() {
+        Dictionaries snapshot = dictionaries;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (dictionaries == null) {
+                    refresh();
+                }
+                snapshot = dictionaries;
+            }
+        }
+        return snapshot;
+    }
+
+    private Dictionary dictionary(long id) {
+        Dictionary dictionary = dictionaries().byId.get(id);
+        if (dictionary == null) {
+            // Written by a replica that trained a dictionary this one has not loaded yet
+            refresh();
+            dictionary = dictionaries.byId.get(id);
+            if (dictionary == null) {
+                throw new IllegalStateException("Unknown context dictionary " + id);
+            }
+        }
+        return dictionary;
+    }
+
+    private record Dictionary(ZstdDictCompress compress, ZstdDictDecompress decompress) {
+    }
+
+    private record Dictionaries(Map<Long, Dictionary> byId, Dictionary current) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.LegacyContextView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Background job that moves whole contexts written before the chunk store (TEXT, or zstd in
+// context_zstd) into it, a batch per transaction. On its first runs it also trains the compression
+// dictionary once enough sample contexts exist. Safe to run on every replica.
+@Component
+public class ContextCompressionMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextCompressionMigrator.class);
+
+    private final ChatMessageRepository messageRepository;
+    private final ContextChunkRepository chunkRepository;
+    private final ContextChunkStore chunkStore;
+    private final ContextCodec codec;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxRowsPerRun;
+    private final int trainingSamples;
+    private final int minTrainingSamples;
+
+    private final Counter migrated;
+
+    public ContextCompressionMigrator(ChatMessageRepository messageRepository,
+                                      ContextChunkRepository chunkRepository,
+                                      ContextChunkStore chunkStore,
+                                      ContextCodec codec,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${context-compression.migrator.enabled:true}") boolean enabled,
+                                      @Value("${context-compression.migrator.batch-size:200}") int batchSize,
+                                      @Value("${context-compression.migrator.max-rows-per-run:20000}") int maxRowsPerRun,
+                                      @Value("${context-compression.training-samples:500}") int trainingSamples,
+                                      @Value("${context-compression.min-training-samples:100}") int minTrainingSamples,
+                                      MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.chunkRepository = chunkRepository;
+        this.chunkStore = chunkStore;
+        this.codec = codec;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxRowsPerRun = maxRowsPerRun;
+        this.trainingSamples = trainingSamples;
+        this.minTrainingSamples = minTrainingSamples;
+        this.migrated = Counter.builder("context.compression.migrated")
+                .description("Existing contexts rewritten into the chunk store")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${context-compression.migrator.interval:PT1M}",
+            initialDelayString = "${context-compression.migrator.initial-delay:PT10S}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            codec.refresh();
+            if (!codec.hasDictionary()) {
+                trainDictionary();
+            }
+            int rows = migrate();
+            if (rows > 0) {
+                log.info("Moved {} existing message contexts into the chunk store", rows);
+            }
+        } catch (RuntimeException ex) {
+            // Retried on the next run
+            log.warn("Context compression run failed", ex);
+        }
+    }
+
+    // Trains on what the codec compresses: recipes and chunks, taken from whole contexts not
+    // migrated yet and, when there are too few of those, from the chunk store itself
+    void trainDictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        int contexts = 0;
+        for (LegacyContextView row : messageRepository.sampleUnchunkedContexts(trainingSamples)) {
+            ContextRecipe recipe = ContextRecipe.split(
+                    wholeContext(row).getBytes(StandardCharsets.UTF_8));
+            samples.add(recipe.encode());
+            for (ContextRecipe.Part part : recipe.parts()) {
+                if (part.isChunk()) {
+                    samples.add(part.chunk());
+                }
+            }
+            contexts++;
+        }
+        if (contexts < trainingSamples) {
+            for (byte[] recipe : messageRepository.sampleContextRecipes(trainingSamples - contexts)) {
+                samples.add(codec.decompressBytes(recipe));
+                contexts++;
+            }
+            for (byte[] chunk : chunkRepository.sampleData(trainingSamples)) {
+                samples.add(codec.decompressBytes(chunk));
+            }
+        }
+        if (contexts < minTrainingSamples) {
+            log.debug("Not training a context dictionary yet: {} of {} samples", contexts, minTrainingSamples);
+            return;
+        }
+        codec.train(samples);
+    }
+
+    // Returns the number of rows rewritten; stops early once the backlog is empty
+    int migrate() {
+        int total = 0;
+        while (total < maxRowsPerRun) {
+            Integer rows = transactionTemplate.execute(status -> {
+                List<LegacyContextView> batch = messageRepository.lockUnchunkedContexts(batchSize);
+                List<ContextChunkRepository.Reference> references = new ArrayList<>();
+                for (LegacyContextView row : batch) {
+                    ContextChunkStore.StoredContext stored = chunkStore.write(wholeContext(row));
+                    messageRepository.storeChunkedContext(row.getId(), row.getCreatedAt(), stored.recipe(),
+                            stored.chunks());
+                    references.addAll(ContextChunkStore.references(row.getId(), row.getCreatedAt(), stored.chunks()));
+                }
+                chunkStore.addReferences(references);
+                return batch.size();
+            });
+            total += rows;
+            migrated.increment(rows);
+            if (rows < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private String wholeContext(LegacyContextView row) {
+        return row.getLegacyContext() != null ? row.getLegacyContext() : codec.decompress(row.getCompressedContext());
+    }
+}
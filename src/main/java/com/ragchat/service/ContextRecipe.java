@@ -0,0 +1,205 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A context split into literal bytes and content-addressed chunks. Concatenating the parts in
+// order gives back the exact bytes. It is stored as two values: the recipe (literals and a marker
+// per chunk, in chat_messages.context_recipe) and the chunk hashes in order (context_chunks),
+// kept apart so the chunk sweeper can read references in SQL.
+//
+// For JSON contexts every string value of at least MIN_CHUNK_BYTES (the retrieved passages)
+// becomes a chunk and the JSON around it (ids, scores, field names) stays literal, because a
+// passage recurs across thousands of messages while its surroundings rarely do. Other text, and
+// string values longer than the maximum chunk size, are cut with content-defined chunking.
+public final class ContextRecipe {
+
+    static final int MIN_CHUNK_BYTES = 256;
+    static final int HASH_BYTES = 32;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final byte LITERAL = 'L';
+    private static final byte CHUNK = 'C';
+
+    private static final ContentDefinedChunker CHUNKER = new ContentDefinedChunker(4 * 1024, 16 * 1024, 64 * 1024);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Either literal bytes or a reference to a chunk (hash plus, when freshly split, its bytes)
+    public record Part(byte[] literal, byte[] hash, byte[] chunk) {
+
+        public boolean isChunk() {
+            return hash != null;
+        }
+
+        public ByteBuffer key() {
+            return ByteBuffer.wrap(hash);
+        }
+    }
+
+    private final List<Part> parts;
+
+    private ContextRecipe(List<Part> parts) {
+        this.parts = parts;
+    }
+
+    public List<Part> parts() {
+        return parts;
+    }
+
+    public static ContextRecipe split(byte[] context) {
+        List<Part> parts = new ArrayList<>();
+        int literalStart = 0;
+        for (int[] segment : chunkableSegments(context)) {
+            if (segment[0] > literalStart) {
+                parts.add(literal(Arrays.copyOfRange(context, literalStart, segment[0])));
+            }
+            byte[] value = Arrays.copyOfRange(context, segment[0], segment[1]);
+            int from = 0;
+            for (int cut : CHUNKER.cutPoints(value)) {
+                byte[] chunk = Arrays.copyOfRange(value, from, cut);
+                parts.add(new Part(null, sha256(chunk), chunk));
+                from = cut;
+            }
+            literalStart = segment[1];
+        }
+        if (literalStart < context.length) {
+            parts.add(literal(Arrays.copyOfRange(context, literalStart, context.length)));
+        }
+        return new ContextRecipe(parts);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FORMAT_VERSION);
+        for (Part part : parts) {
+            if (part.isChunk()) {
+                out.write(CHUNK);
+            } else {
+                out.write(LITERAL);
+                writeVarint(out, part.literal().length);
+                out.writeBytes(part.literal());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Chunk hashes in order, HASH_BYTES each
+    public byte[] chunkHashes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Part part : parts) {
+            if (part.isChunk()) {
+                out.writeBytes(part.hash());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Decoded chunk parts carry only their hash
+    public static ContextRecipe decode(byte[] encoded, byte[] chunkHashes) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        ByteBuffer hashes = ByteBuffer.wrap(chunkHashes != null ? chunkHashes : new byte[0]);
+        int version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported context recipe version " + version);
+        }
+        List<Part> parts = new ArrayList<>();
+        while (in.hasRemaining()) {
+            byte tag = in.get();
+            if (tag == CHUNK) {
+                byte[] hash = new byte[HASH_BYTES];
+                hashes.get(hash);
+                parts.add(new Part(null, hash, null));
+            } else if (tag == LITERAL) {
+                byte[] literal = new byte[readVarint(in)];
+                in.get(literal);
+                parts.add(literal(literal));
+            } else {
+                throw new IllegalStateException("Corrupt context recipe, unknown tag " + tag);
+            }
+        }
+        return new ContextRecipe(parts);
+    }
+
+    // Byte ranges [start, end) to store as chunks. JSON is scanned without being rebuilt, so the
+    // literal bytes between values are kept exactly as the client sent them.
+    private static List<int[]> chunkableSegments(byte[] context) {
+        if (context.length < MIN_CHUNK_BYTES) {
+            return List.of();
+        }
+        if (!looksLikeJson(context)) {
+            return List.<int[]>of(new int[]{0, context.length});
+        }
+        List<int[]> segments = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(context)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING) {
+                    // Offsets of the escaped value, without its quotes
+                    int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+                    parser.finishToken();
+                    int end = (int) parser.currentLocation().getByteOffset() - 1;
+                    if (end - start >= MIN_CHUNK_BYTES) {
+                        segments.add(new int[]{start, end});
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // Not valid JSON after all (or trailing garbage): chunk it as plain text
+            return List.<int[]>of(new int[]{0, context.length});
+        }
+        return segments;
+    }
+
+    private static boolean looksLikeJson(byte[] context) {
+        for (byte b : context) {
+            if (b == '{' || b == '[') {
+                return true;
+            }
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static Part literal(byte[] bytes) {
+        return new Part(bytes, null, null);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    static byte[] sha256(byte[] chunk) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(chunk);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
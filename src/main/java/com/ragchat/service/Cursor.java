@@ -0,0 +1,39 @@
+package com.ragchat.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+// Opaque keyset position; the id breaks ties between rows sharing a timestamp.
+public record Cursor(OffsetDateTime timestamp, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    // PostgreSQL keeps microseconds; a timestamp taken in memory (e.g. a message the writer has not
+    // reread) may carry nanoseconds, which would make the cursor compare past its own row
+    public String encode() {
+        String raw = timestamp.toInstant().truncatedTo(ChronoUnit.MICROS).toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            Instant instant = Instant.parse(raw.substring(0, split));
+            UUID id = UUID.fromString(raw.substring(split + 1));
+            return new Cursor(instant.atOffset(ZoneOffset.UTC), id);
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
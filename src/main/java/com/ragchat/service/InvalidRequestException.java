@@ -0,0 +1,8 @@
+package com.ragchat.service;
+
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
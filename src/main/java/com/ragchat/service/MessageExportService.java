@@ -0,0 +1,96 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Service
+public class MessageExportService {
+
+    // Matches the fetch size hint on ChatMessageRepository.streamBySessionId
+    static final int CLEAR_INTERVAL = 500;
+
+    private final SessionCache sessionCache;
+    private final ChatMessageRepository messageRepository;
+    private final ContextChunkStore contextChunkStore;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ReplicaLagGuard replicaLagGuard;
+    private final ObjectWriter messageWriter;
+
+    public MessageExportService(SessionCache sessionCache,
+                                ChatMessageRepository messageRepository,
+                                ContextChunkStore contextChunkStore,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                ReplicaLagGuard replicaLagGuard) {
+        this.sessionCache = sessionCache;
+        this.messageRepository = messageRepository;
+        this.contextChunkStore = contextChunkStore;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.replicaLagGuard = replicaLagGuard;
+        this.messageWriter = objectMapper.writerFor(ChatMessageResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional(readOnly = true)
+    public void checkSessionExists(UUID sessionId) {
+        replicaLagGuard.beforeRead(null, sessionId);
+        sessionCache.require(sessionId);
+    }
+
+    // Writes one JSON object per line. Rows are read through a forward-only cursor and the
+    // persistence context is cleared periodically, so memory stays flat regardless of session size.
+    // Contexts, when requested, are loaded per chunk of CLEAR_INTERVAL messages.
+    @Transactional(readOnly = true)
+    public void exportMessages(UUID sessionId, boolean includeContext, OutputStream out) throws IOException {
+        replicaLagGuard.beforeRead(null, sessionId);
+        OffsetDateTime since = ChatService.messagesSince(sessionCache.require(sessionId));
+        try (Stream<ChatMessage> messages = messageRepository.streamBySessionId(sessionId, since);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            List<ChatMessageResponse> chunk = new ArrayList<>(CLEAR_INTERVAL);
+            Iterator<ChatMessage> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(ChatService.toMessageResponse(iterator.next()));
+                if (chunk.size() == CLEAR_INTERVAL) {
+                    writeChunk(generator, chunk, includeContext);
+                    entityManager.clear();
+                }
+            }
+            writeChunk(generator, chunk, includeContext);
+        }
+    }
+
+    private void writeChunk(JsonGenerator generator, List<ChatMessageResponse> chunk,
+                            boolean includeContext) throws IOException {
+        if (includeContext) {
+            contextChunkStore.attachContexts(chunk);
+        }
+        for (ChatMessageResponse message : chunk) {
+            messageWriter.writeValue(generator, message);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        chunk.clear();
+    }
+}
@@ -0,0 +1,124 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.MessagePartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+// Converts the plain chat_messages table Hibernate created into a range-partitioned one, whose
+// existing rows become the partition chat_messages_legacy. An empty table (a new installation) is
+// converted on startup; a table with rows only when message-partitions.convert is set, since the
+// preparation scans the whole table (without blocking reads or writes, see
+// MessagePartitionRepository). Runs in the background once the application is ready, and on one
+// replica at a time.
+@Component
+public class MessagePartitionConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionConversion.class);
+
+    static final String LEGACY_PARTITION = MessagePartitionRepository.TABLE + "_legacy";
+
+    private final MessagePartitionRepository partitionRepository;
+    private final MessagePartitionMaintenance maintenance;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final String lockTimeout;
+
+    public MessagePartitionConversion(MessagePartitionRepository partitionRepository,
+                                      MessagePartitionMaintenance maintenance,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${message-partitions.convert:false}") boolean enabled,
+                                      @Value("${message-partitions.lock-timeout:5s}") String lockTimeout) {
+        this.partitionRepository = partitionRepository;
+        this.maintenance = maintenance;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (partitionRepository.isPartitioned()) {
+            return;
+        }
+        Thread converter = new Thread(() -> {
+            try {
+                if (enabled || isEmpty()) {
+                    convert();
+                } else {
+                    partitionRepository.runExclusively(this::dropLeftoverBoundCheck);
+                    log.warn("{} is not partitioned; set message-partitions.convert=true on one instance to convert it",
+                            MessagePartitionRepository.TABLE);
+                }
+            } catch (RuntimeException ex) {
+                log.error("Converting {} to a partitioned table failed", MessagePartitionRepository.TABLE, ex);
+            }
+        }, "message-partition-conversion");
+        converter.setDaemon(true);
+        converter.start();
+    }
+
+    // Returns false if another replica is converting
+    public synchronized boolean convert() {
+        boolean ran = partitionRepository.runExclusively(() -> {
+            if (partitionRepository.isPartitioned()) {
+                return;
+            }
+            // Rows written while the conversion runs must pass the check, so the legacy partition
+            // also covers next month; later months get their own partitions
+            Instant upperBound = MessagePartitionRepository.start(YearMonth.now(ZoneOffset.UTC).plusMonths(2));
+            log.info("Converting {} to a partitioned table, existing rows become partition {}",
+                    MessagePartitionRepository.TABLE, LEGACY_PARTITION);
+            try {
+                partitionRepository.createConversionIndex();
+                transactionTemplate.executeWithoutResult(status -> {
+                    partitionRepository.lock(lockTimeout);
+                    partitionRepository.addBoundCheck(upperBound);
+                });
+                partitionRepository.validateBoundCheck();
+                transactionTemplate.executeWithoutResult(status -> {
+                    partitionRepository.lock(lockTimeout);
+                    partitionRepository.convertToPartitioned(LEGACY_PARTITION, upperBound);
+                });
+            } catch (RuntimeException ex) {
+                // The concurrently built index is kept for the next attempt
+                dropLeftoverBoundCheck();
+                throw ex;
+            }
+            log.info("Converted {} to a partitioned table", MessagePartitionRepository.TABLE);
+        });
+        if (ran) {
+            maintenance.run();
+        }
+        return ran;
+    }
+
+    private boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from " + MessagePartitionRepository.TABLE + ")", Boolean.class));
+    }
+
+    // Only called while holding the conversion lock, so no conversion is relying on the check
+    private void dropLeftoverBoundCheck() {
+        if (!partitionRepository.isPartitioned() && partitionRepository.hasBoundCheck()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                partitionRepository.lock(lockTimeout);
+                partitionRepository.dropBoundCheck();
+            });
+            log.info("Dropped the check constraint of an unfinished conversion of {}", MessagePartitionRepository.TABLE);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.MessagePartitionRepository;
+import com.ragchat.repository.MessagePartitionRepository.Partition;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+// Keeps chat_messages range-partitioned by created_at month: on every run it creates the partitions
+// for the coming months and retires partitions older than the retention period, either dropping
+// them or detaching them into standalone archive tables. Converting the table Hibernate created
+// into a partitioned one is a separate step, see MessagePartitionConversion; until then runs do
+// nothing.
+@Component
+@DependsOnDatabaseInitialization
+public class MessagePartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionMaintenance.class);
+
+    public enum RetentionMode { DROP, ARCHIVE }
+
+    private static final int REFERENCE_BATCH_SIZE = 10_000;
+
+    private final MessagePartitionRepository partitionRepository;
+    private final ContextChunkRepository chunkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final RetentionMode retentionMode;
+    private final String archiveTablespace;
+    private final String lockTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public MessagePartitionMaintenance(MessagePartitionRepository partitionRepository,
+                                       ContextChunkRepository chunkRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${message-partitions.premake-months:3}") int premakeMonths,
+                                       @Value("${message-partitions.retention.months:0}") int retentionMonths,
+                                       @Value("${message-partitions.retention.mode:drop}") RetentionMode retentionMode,
+                                       @Value("${message-partitions.retention.archive-tablespace:}") String archiveTablespace,
+                                       @Value("${message-partitions.lock-timeout:5s}") String lockTimeout,
+                                       MeterRegistry meterRegistry) {
+        this.partitionRepository = partitionRepository;
+        this.chunkRepository = chunkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.retentionMode = retentionMode;
+        this.archiveTablespace = archiveTablespace;
+        this.lockTimeout = lockTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${message-partitions.interval:PT6H}", initialDelayString = "PT0S")
+    public void run() {
+        YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+        try {
+            if (!partitionRepository.isPartitioned()) {
+                // MessagePartitionConversion warns if it is not going to convert it
+                log.info("{} is not partitioned yet, skipping maintenance", MessagePartitionRepository.TABLE);
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                partitionRepository.lock(lockTimeout);
+                createFuturePartitions(currentMonth);
+            });
+            if (retentionMonths > 0) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    partitionRepository.lock(lockTimeout);
+                    retireExpiredPartitions(currentMonth);
+                });
+                releaseRetiredReferences();
+            }
+        } catch (RuntimeException ex) {
+            // Typically a lock timeout; retried on the next run, months before a partition is needed
+            log.warn("Message partition maintenance failed", ex);
+        }
+    }
+
+    void createFuturePartitions(YearMonth currentMonth) {
+        List<Partition> partitions = partitionRepository.findPartitions();
+        YearMonth month = currentMonth;
+        if (!partitions.isEmpty()) {
+            // Continue after the last existing range, which may be the legacy partition
+            YearMonth covered = YearMonth.from(partitions.get(partitions.size() - 1).upperBound().atZone(ZoneOffset.UTC));
+            if (covered.isAfter(month)) {
+                month = covered;
+            }
+        }
+        YearMonth last = currentMonth.plusMonths(premakeMonths);
+        for (; !month.isAfter(last); month = month.plusMonths(1)) {
+            partitionRepository.createMonth(month);
+            log.info("Created message partition {}", MessagePartitionRepository.monthName(month));
+        }
+    }
+
+    // A partition is retired once its whole range is older than the retention period
+    void retireExpiredPartitions(YearMonth currentMonth) {
+        Instant cutoff = MessagePartitionRepository.start(currentMonth.minusMonths(retentionMonths));
+        for (Partition partition : partitionRepository.findPartitions()) {
+            if (partition.upperBound().isAfter(cutoff)) {
+                break;
+            }
+            if (retentionMode == RetentionMode.ARCHIVE) {
+                String archived = partitionRepository.detach(partition.name(), archiveName(partition.name()),
+                        archiveTablespace);
+                log.info("Archived message partition {} as {}", partition.name(), archived);
+            } else {
+                partitionRepository.drop(partition.name());
+                log.info("Dropped message partition {}", partition.name());
+            }
+            meterRegistry.counter("chat.messages.partitions.retired", "mode", retentionMode.name().toLowerCase())
+                    .increment();
+        }
+    }
+
+    // Deletes the context chunk references of retired messages in batches, outside the partition
+    // lock, so the chunk sweeper can remove the chunks only they used. Left-overs of a failed run
+    // merely delay that and are picked up by the next run.
+    void releaseRetiredReferences() {
+        Instant retainedFrom = partitionRepository.findRetainedFrom();
+        if (retainedFrom == null) {
+            return;
+        }
+        long released = 0;
+        int deleted;
+        do {
+            deleted = chunkRepository.deleteReferencesBefore(retainedFrom, REFERENCE_BATCH_SIZE);
+            released += deleted;
+        } while (deleted == REFERENCE_BATCH_SIZE);
+        if (released > 0) {
+            log.info("Released {} context chunk references of messages before {}", released, retainedFrom);
+        }
+    }
+
+    static String archiveName(String partition) {
+        return partition.replaceFirst("^" + MessagePartitionRepository.TABLE + "_", MessagePartitionRepository.TABLE + "_archive_");
+    }
+}
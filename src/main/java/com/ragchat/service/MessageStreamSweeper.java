@@ -0,0 +1,42 @@
+package com.ragchat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Finishes streamed messages whose producer stopped sending deltas without completing them
+// (streaming.idle-timeout): the content received so far is stored, and streams without content
+// or whose session was deleted are aborted.
+@Component
+public class MessageStreamSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageStreamSweeper.class);
+
+    private final MessageStreams messageStreams;
+    private final ChatService chatService;
+
+    public MessageStreamSweeper(MessageStreams messageStreams, ChatService chatService) {
+        this.messageStreams = messageStreams;
+        this.chatService = chatService;
+    }
+
+    @Scheduled(fixedDelayString = "${streaming.sweep-interval:PT15S}")
+    public void run() {
+        for (MessageStreams.Snapshot stream : messageStreams.idle()) {
+            try {
+                if (stream.content().isBlank()) {
+                    chatService.abortMessageStream(stream.sessionId(), stream.id());
+                } else {
+                    chatService.completeMessageStream(stream.sessionId(), stream.id(), null);
+                    log.info("Completed message stream {} after it went idle", stream.id());
+                }
+            } catch (ResourceNotFoundException ex) {
+                // Completed concurrently, or the session was deleted
+                chatService.abortMessageStream(stream.sessionId(), stream.id());
+            } catch (RuntimeException ex) {
+                log.warn("Could not complete idle message stream {}, retrying on the next run", stream.id(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ragchat.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Messages being streamed, typically an assistant reply generated token by token. Deltas are
+// coalesced here in memory and only the completed message is written, as one row (see
+// ChatService.completeMessageStream). A stream stays here until that row is committed. Streams
+// live on the instance that opened them and are lost with it, like messages still in the
+// write-behind queue.
+@Component
+public class MessageStreams {
+
+    // chat_messages.content
+    static final int MAX_CONTENT_LENGTH = 4000;
+
+    // The content so far of an open stream; seq counts the deltas it is made of
+    public record Snapshot(UUID id, UUID sessionId, String userId, String sender, String content,
+                           int seq, OffsetDateTime startedAt) {
+    }
+
+    // One appended piece of a stream; seq numbers deltas from 1 so subscribers can skip ones
+    // already contained in a snapshot
+    public record Delta(UUID id, int seq, String content) {
+    }
+
+    private static final class Stream {
+
+        final UUID id;
+        final UUID sessionId;
+        final String userId;
+        final String sender;
+        final OffsetDateTime startedAt;
+        final StringBuilder content = new StringBuilder();
+        int seq;
+        long lastActivityNanos = System.nanoTime();
+        // Being stored by a completion whose transaction has not finished yet
+        boolean completing;
+
+        Stream(UUID id, UUID sessionId, String userId, String sender, OffsetDateTime startedAt) {
+            this.id = id;
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.sender = sender;
+            this.startedAt = startedAt;
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(id, sessionId, userId, sender, content.toString(), seq, startedAt);
+        }
+    }
+
+    private final Map<UUID, Stream> streams = new ConcurrentHashMap<>();
+    private final int maxOpenStreams;
+    private final long idleTimeoutNanos;
+
+    public MessageStreams(@Value("${streaming.max-open-streams:10000}") int maxOpenStreams,
+                          @Value("${streaming.idle-timeout:PT2M}") Duration idleTimeout,
+                          MeterRegistry meterRegistry) {
+        this.maxOpenStreams = maxOpenStreams;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        Gauge.builder("chat.streams.open", streams, Map::size)
+                .description("Streamed messages opened but not yet completed")
+                .register(meterRegistry);
+    }
+
+    Snapshot open(UUID sessionId, String userId, String sender) {
+        if (streams.size() >= maxOpenStreams) {
+            throw new TooManyStreamsException("Too many messages are being streamed, retry shortly");
+        }
+        Stream stream = new Stream(UUID.randomUUID(), sessionId, userId, sender, OffsetDateTime.now());
+        streams.put(stream.id, stream);
+        return stream.snapshot();
+    }
+
+    // Appends under the stream's lock and hands the delta to the callback before releasing it, so
+    // subscribers receive a stream's deltas in seq order. The callback only queues the delta (see
+    // SessionEvents), so no client is written to under the lock.
+    Delta append(UUID sessionId, UUID messageId, String content, Consumer<Delta> callback) {
+        Stream stream = require(sessionId, messageId);
+        synchronized (stream) {
+            if (streams.get(messageId) != stream || stream.completing) {
+                throw new ResourceNotFoundException("Message stream not found");
+            }
+            if (stream.content.length() + content.length() > MAX_CONTENT_LENGTH) {
+                throw new InvalidRequestException("Message content exceeds " + MAX_CONTENT_LENGTH + " characters");
+            }
+            stream.content.append(content);
+            stream.lastActivityNanos = System.nanoTime();
+            Delta delta = new Delta(messageId, ++stream.seq, content);
+            callback.accept(delta);
+            return delta;
+        }
+    }
+
+    // Marks the stream as completing and returns its content; deltas and other completions are
+    // rejected from then on. The stream is only removed once the transaction storing it commits. If
+    // that transaction rolls back, the stream is reopened so the producer or the sweeper can
+    // complete it again. A stream without content stays open, since a message cannot be empty.
+    Snapshot complete(UUID sessionId, UUID messageId) {
+        Stream stream = require(sessionId, messageId);
+        Snapshot snapshot;
+        synchronized (stream) {
+            if (streams.get(messageId) != stream || stream.completing) {
+                throw new ResourceNotFoundException("Message stream not found");
+            }
+            if (stream.content.toString().isBlank()) {
+                throw new InvalidRequestException("Message stream has no content");
+            }
+            stream.completing = true;
+            snapshot = stream.snapshot();
+        }
+        afterCompletion(committed -> {
+            if (committed) {
+                streams.remove(messageId, stream);
+            } else {
+                synchronized (stream) {
+                    stream.completing = false;
+                }
+            }
+        });
+        return snapshot;
+    }
+
+    // Ends the stream without returning its content; false if it was already closed or is being
+    // completed
+    boolean discard(UUID sessionId, UUID messageId) {
+        Stream stream = streams.get(messageId);
+        if (stream == null || !stream.sessionId.equals(sessionId)) {
+            return false;
+        }
+        synchronized (stream) {
+            return !stream.completing && streams.remove(messageId, stream);
+        }
+    }
+
+    // Snapshots of the session's open streams, for subscribers joining mid-stream
+    List<Snapshot> openIn(UUID sessionId) {
+        List<Snapshot> open = new ArrayList<>();
+        for (Stream stream : streams.values()) {
+            if (stream.sessionId.equals(sessionId)) {
+                synchronized (stream) {
+                    open.add(stream.snapshot());
+                }
+            }
+        }
+        return open;
+    }
+
+    // Streams without a delta for idle-timeout, e.g. because the producer died
+    List<Snapshot> idle() {
+        long now = System.nanoTime();
+        List<Snapshot> idle = new ArrayList<>();
+        for (Stream stream : streams.values()) {
+            synchronized (stream) {
+                if (!stream.completing && now - stream.lastActivityNanos >= idleTimeoutNanos) {
+                    idle.add(stream.snapshot());
+                }
+            }
+        }
+        return idle;
+    }
+
+    // Runs the action with the outcome of the current transaction, or right away as committed
+    // outside of one
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    private Stream require(UUID sessionId, UUID messageId) {
+        Stream stream = streams.get(messageId);
+        if (stream == null || !stream.sessionId.equals(sessionId)) {
+            throw new ResourceNotFoundException("Message stream not found");
+        }
+        return stream;
+    }
+}
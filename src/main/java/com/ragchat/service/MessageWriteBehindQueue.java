@@ -0,0 +1,249 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Opt-in asynchronous write path (write-behind.enabled). Accepted messages wait in a bounded
+// queue and a single writer persists them in group commits: one transaction per batch of up to
+// max-batch-size messages or whatever arrived within flush-interval, whichever comes first.
+// Queued messages are lost if the process dies before they are flushed.
+//
+// createdAt is stamped by the writer just before the insert, not at acceptance: a message that
+// waited in the queue would otherwise become visible with a timestamp older than rows committed
+// meanwhile, behind the cursor of a reader that already paged past them.
+@Component
+public class MessageWriteBehindQueue implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+
+    public record PendingMessage(UUID id,
+                                 UUID sessionId,
+                                 String userId,
+                                 String sender,
+                                 String content,
+                                 String context) {
+    }
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingMessage> queue;
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final RecentMessagesBuffer recentMessages;
+    private final ContextChunkStore contextChunkStore;
+    private final VersionRegistry versionRegistry;
+    private final SessionEvents sessionEvents;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSize;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public MessageWriteBehindQueue(@Value("${write-behind.enabled:false}") boolean enabled,
+                                   @Value("${write-behind.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${write-behind.max-batch-size:500}") int maxBatchSize,
+                                   @Value("${write-behind.flush-interval:50ms}") Duration flushInterval,
+                                   ChatSessionRepository sessionRepository,
+                                   ChatMessageRepository messageRepository,
+                                   RecentMessagesBuffer recentMessages,
+                                   ContextChunkStore contextChunkStore,
+                                   VersionRegistry versionRegistry,
+                                   SessionEvents sessionEvents,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.recentMessages = recentMessages;
+        this.contextChunkStore = contextChunkStore;
+        this.versionRegistry = versionRegistry;
+        this.sessionEvents = sessionEvents;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.flushTimer = Timer.builder("chat.writebehind.flush")
+                .description("Time to persist one write-behind batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("chat.writebehind.batch.size")
+                .description("Messages persisted per write-behind transaction")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.writebehind.rejected")
+                .description("Messages refused because the write-behind queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("chat.writebehind.failed")
+                .description("Accepted messages that could not be persisted")
+                .register(meterRegistry);
+        Gauge.builder("chat.writebehind.queue.depth", queue, BlockingQueue::size)
+                .description("Messages accepted but not yet persisted")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns false when the queue is full; the caller should surface backpressure.
+    public boolean submit(PendingMessage message) {
+        if (running && queue.offer(message)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drainLoop, "write-behind-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // Flush whatever was accepted before shutdown
+        List<PendingMessage> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, maxBatchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Start before and stop after the web server, so nothing is accepted that cannot be flushed
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    PendingMessage next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // stop() interrupts the writer; the current batch is still flushed below
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<PendingMessage> batch) {
+        batchSize.record(batch.size());
+        flushTimer.record(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(batch));
+            } catch (RuntimeException ex) {
+                // One bad message (e.g. its session was deleted) must not drop the whole batch
+                log.warn("Write-behind batch of {} failed, retrying messages individually", batch.size(), ex);
+                for (PendingMessage message : batch) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> persist(List.of(message)));
+                    } catch (RuntimeException single) {
+                        failed.increment();
+                        log.error("Dropping write-behind message {} for session {}",
+                                message.id(), message.sessionId(), single);
+                    }
+                }
+            }
+        });
+    }
+
+    private void persist(List<PendingMessage> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        List<UUID> sessionIds = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            ChatMessage message = new ChatMessage();
+            message.setId(pending.id());
+            message.setSession(sessionRepository.getReferenceById(pending.sessionId()));
+            message.setSender(pending.sender());
+            message.setContent(pending.content());
+            ChatService.storeContext(contextChunkStore, message, pending.context());
+            messages.add(message);
+            sessionIds.add(pending.sessionId());
+        }
+        // One microsecond apart (the column's precision), so (created_at, id) keeps the append order
+        OffsetDateTime stampedAt = OffsetDateTime.now();
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setCreatedAt(stampedAt.plusNanos(i * 1_000L));
+        }
+        messageRepository.saveAll(messages);
+        contextChunkStore.recordReferences(messages);
+        ChatService.recordActivity(sessionRepository, sessionIds, messages);
+        for (int i = 0; i < messages.size(); i++) {
+            recentMessages.append(batch.get(i).sessionId(), ChatService.toMessageResponse(messages.get(i)));
+            // Subscribers hear of the message once it is stored; a rolled back batch announces nothing
+            sessionEvents.publishAfterCommit(batch.get(i).sessionId(), SessionEvents.MESSAGE_CREATED,
+                    ChatService.toMessageResponse(messages.get(i)));
+        }
+        for (PendingMessage pending : batch) {
+            versionRegistry.recordWrite(pending.userId(), pending.sessionId());
+        }
+    }
+}
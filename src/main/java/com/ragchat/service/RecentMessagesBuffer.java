@@ -0,0 +1,195 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+// Per-session ring buffer of the most recent messages, used to serve tail reads without scanning
+// the messages. Buffers are weighed by an estimate of their heap footprint so the whole structure
+// respects a global memory cap; idle sessions are evicted first.
+// Context is not buffered: tail reads are meant for prompt assembly and context can be large.
+//
+// Buffers only see the appends made through this instance. Each one remembers the session's
+// message_count it covers and the VersionRegistry version it was last checked at. While that
+// version is unchanged the buffer is served without a query. Otherwise (a write went through
+// this instance, or the version expired after etag.version-ttl, which bounds how long another
+// instance's appends go unseen) the current count is looked up by primary key: a buffer that is
+// behind is refilled, one that is ahead (a lagging replica answered the lookup) is served as it
+// is. Buffers also expire tail-buffer.expire-after-write after their last fill, check or append.
+@Component
+public class RecentMessagesBuffer {
+
+    private static final Comparator<ChatMessageResponse> CHRONOLOGICAL =
+            Comparator.comparing(ChatMessageResponse::getCreatedAt)
+                    .thenComparing(ChatMessageResponse::getId);
+
+    private final ChatMessageRepository messageRepository;
+    private final ChatSessionRepository sessionRepository;
+    private final VersionRegistry versionRegistry;
+    private final int capacity;
+    private final Cache<UUID, Tail> buffers;
+
+    public RecentMessagesBuffer(ChatMessageRepository messageRepository,
+                                ChatSessionRepository sessionRepository,
+                                VersionRegistry versionRegistry,
+                                @Value("${tail-buffer.messages-per-session:50}") int capacity,
+                                @Value("${tail-buffer.max-memory-mb:64}") long maxMemoryMb,
+                                @Value("${tail-buffer.expire-after-write:1m}") Duration expireAfterWrite,
+                                MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.sessionRepository = sessionRepository;
+        this.versionRegistry = versionRegistry;
+        this.capacity = capacity;
+        this.buffers = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryMb * 1024 * 1024)
+                .weigher((UUID sessionId, Tail tail) -> tail.weight)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "tailBuffer");
+        Gauge.builder("tail.buffer.weight", buffers,
+                        cache -> cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+                .baseUnit("bytes")
+                .description("Estimated heap held by recent-message buffers")
+                .register(meterRegistry);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Returns up to n of the newest messages, oldest first. A miss or a stale buffer is filled
+    // from the (session_id, created_at, id) index of the partitions from since on; appends for the
+    // same session wait for the fill.
+    public List<ChatMessageResponse> tail(UUID sessionId, OffsetDateTime since, int n) {
+        // Read before the count, so a write committed in between at worst costs another check
+        long writeVersion = versionRegistry.messagesVersion(sessionId);
+        Tail tail = buffers.getIfPresent(sessionId);
+        if (tail == null || tail.writeVersion != writeVersion) {
+            long version = sessionRepository.findMessageCount(sessionId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
+            tail = buffers.asMap().compute(sessionId, (id, current) ->
+                    current != null && current.version >= version
+                            ? current.checkedAt(writeVersion)
+                            : load(id, since, version, writeVersion));
+        }
+        ChatMessageResponse[] messages = tail.messages;
+        int count = Math.min(n, messages.length);
+        return Collections.unmodifiableList(
+                Arrays.asList(messages).subList(messages.length - count, messages.length));
+    }
+
+    // Applies the message once the surrounding transaction commits. Sessions without a
+    // buffer are left alone: the next tail read loads them complete from the database.
+    public void append(UUID sessionId, ChatMessageResponse message) {
+        ChatMessageResponse entry = withoutContext(message);
+        afterCommit(() -> buffers.asMap().computeIfPresent(sessionId, (id, tail) -> tail.with(entry, capacity)));
+    }
+
+    public void invalidate(UUID sessionId) {
+        afterCommit(() -> buffers.invalidate(sessionId));
+    }
+
+    public void invalidateAll(Collection<UUID> sessionIds) {
+        afterCommit(() -> buffers.invalidateAll(sessionIds));
+    }
+
+    // The count is read before the rows, so a message committed in between at worst makes the
+    // next read refill once more
+    private Tail load(UUID sessionId, OffsetDateTime since, long version, long writeVersion) {
+        // Projected without context, so the rows can be kept as they are
+        List<ChatMessageResponse> newestFirst = messageRepository.findNewest(sessionId, since, PageRequest.of(0, capacity));
+        ChatMessageResponse[] messages = new ChatMessageResponse[newestFirst.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[messages.length - 1 - i] = newestFirst.get(i);
+        }
+        return new Tail(messages, version, writeVersion);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static ChatMessageResponse withoutContext(ChatMessageResponse message) {
+        ChatMessageResponse copy = new ChatMessageResponse();
+        copy.setId(message.getId());
+        copy.setSender(message.getSender());
+        copy.setContent(message.getContent());
+        copy.setCreatedAt(message.getCreatedAt());
+        return copy;
+    }
+
+    // Immutable so a reader never observes a half-applied append
+    static final class Tail {
+
+        private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+        final ChatMessageResponse[] messages;
+        // The session's message_count this buffer reflects
+        final long version;
+        // The VersionRegistry version at which version was last checked against the database
+        final long writeVersion;
+        final int weight;
+
+        Tail(ChatMessageResponse[] messages, long version, long writeVersion) {
+            this.messages = messages;
+            this.version = version;
+            this.writeVersion = writeVersion;
+            int bytes = 64;
+            for (ChatMessageResponse message : messages) {
+                bytes += ENTRY_OVERHEAD_BYTES + 2 * message.getContent().length() + 2 * message.getSender().length();
+            }
+            this.weight = bytes;
+        }
+
+        Tail checkedAt(long writeVersion) {
+            return writeVersion == this.writeVersion ? this : new Tail(messages, version, writeVersion);
+        }
+
+        // Keeps writeVersion: the next read checks the count once more
+        Tail with(ChatMessageResponse message, int capacity) {
+            for (ChatMessageResponse existing : messages) {
+                if (existing.getId().equals(message.getId())) {
+                    return this;
+                }
+            }
+            List<ChatMessageResponse> merged = new ArrayList<>(messages.length + 1);
+            Collections.addAll(merged, messages);
+            merged.add(message);
+            // Concurrent commits can land out of order; keep the buffer chronological
+            merged.sort(CHRONOLOGICAL);
+            int from = Math.max(0, merged.size() - capacity);
+            return new Tail(merged.subList(from, merged.size()).toArray(new ChatMessageResponse[0]), version + 1,
+                    writeVersion);
+        }
+    }
+}
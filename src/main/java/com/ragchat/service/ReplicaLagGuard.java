@@ -0,0 +1,70 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// Read-your-writes for replica routing. Writes remember the user and session they touched for
+// read-replica.read-your-writes-window; a read-only transaction for a user or session written
+// within that window is pinned to the primary, so a lagging replica never hides the caller's own
+// change. State is per instance: the window should cover the replica lag plus the time a client
+// needs to come back through the load balancer. Everything is a no-op without a replica.
+@Component
+public class ReplicaLagGuard {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    // Keys are "user:<id>" and "session:<id>"; null when no replica is configured
+    private final Cache<String, Boolean> recentWrites;
+
+    public ReplicaLagGuard(@Value("${read-replica.url:}") String replicaUrl,
+                           @Value("${read-replica.read-your-writes-window:PT5S}") Duration window,
+                           @Value("${read-replica.max-tracked-writes:100000}") long maxTrackedWrites) {
+        this.recentWrites = replicaUrl.isBlank() ? null : Caffeine.newBuilder()
+                .maximumSize(maxTrackedWrites)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public void recordWrite(String userId, UUID sessionId) {
+        if (recentWrites == null) {
+            return;
+        }
+        if (userId != null) {
+            recentWrites.put("user:" + userId, Boolean.TRUE);
+        }
+        if (sessionId != null) {
+            recentWrites.put("session:" + sessionId, Boolean.TRUE);
+        }
+    }
+
+    // Called at the start of a read-only transaction, before its first statement; either argument
+    // may be null. The pin is released when the transaction completes.
+    public void beforeRead(String userId, UUID sessionId) {
+        if (recentWrites == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        boolean wrote = (userId != null && recentWrites.getIfPresent("user:" + userId) != null)
+                || (sessionId != null && recentWrites.getIfPresent("session:" + sessionId) != null);
+        if (wrote && PINNED.get() == null) {
+            PINNED.set(Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    PINNED.remove();
+                }
+            });
+        }
+    }
+
+    // Whether the current read-only transaction must stay on the primary
+    public static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+}
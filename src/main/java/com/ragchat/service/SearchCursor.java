@@ -0,0 +1,33 @@
+package com.ragchat.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+// Opaque keyset position in a ranked result list. The rank round-trips exactly (float4 from
+// ts_rank to Java float and back) so the next page resumes precisely after the last hit.
+public record SearchCursor(float rank, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            float rank = Float.parseFloat(raw.substring(0, split));
+            UUID id = UUID.fromString(raw.substring(split + 1));
+            return new SearchCursor(rank, id);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ragchat.service;
+
+import com.ragchat.api.dto.CursorPageResponse;
+import com.ragchat.api.dto.SearchHitResponse;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.SearchHitView;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class SearchService {
+
+    static final int MAX_PAGE_SIZE = 100;
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_QUERY_LENGTH = 256;
+
+    private final ChatMessageRepository messageRepository;
+    private final ReplicaLagGuard replicaLagGuard;
+
+    public SearchService(ChatMessageRepository messageRepository, ReplicaLagGuard replicaLagGuard) {
+        this.messageRepository = messageRepository;
+        this.replicaLagGuard = replicaLagGuard;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<SearchHitResponse> search(String userId, String q, String cursor, Integer limit) {
+        // Invalid input is rejected before the lag guard registers anything with the transaction
+        if (q == null || q.isBlank()) {
+            throw new InvalidRequestException("Query must not be blank");
+        }
+        if (q.length() > MAX_QUERY_LENGTH) {
+            throw new InvalidRequestException("Query must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        SearchCursor after = cursor == null ? null : SearchCursor.decode(cursor);
+        replicaLagGuard.beforeRead(userId, null);
+
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // One extra row tells whether another page exists
+        List<SearchHitView> rows;
+        if (after == null) {
+            rows = messageRepository.search(userId, q, size + 1);
+        } else {
+            rows = messageRepository.searchAfter(userId, q, after.rank(), after.id(), size + 1);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<SearchHitResponse> content = new ArrayList<>(Math.min(rows.size(), size));
+        for (int i = 0; i < rows.size() && i < size; i++) {
+            content.add(toResponse(rows.get(i)));
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            SearchHitResponse last = content.get(content.size() - 1);
+            nextCursor = new SearchCursor(last.getRank(), last.getId()).encode();
+        }
+        return new CursorPageResponse<>(content, nextCursor, null);
+    }
+
+    // Snippets are user content: escape first, then mark the matches
+    static String highlight(String snippet) {
+        return HtmlUtils.htmlEscape(snippet)
+                .replace("\u0002", "<mark>")
+                .replace("\u0003", "</mark>");
+    }
+
+    private static SearchHitResponse toResponse(SearchHitView row) {
+        SearchHitResponse dto = new SearchHitResponse();
+        dto.setType(row.getType());
+        dto.setId(row.getId());
+        dto.setSessionId(row.getSessionId());
+        dto.setSessionTitle(row.getSessionTitle());
+        dto.setSnippet(highlight(row.getSnippet()));
+        dto.setRank(row.getRank());
+        dto.setCreatedAt(row.getCreatedAt().atOffset(ZoneOffset.UTC));
+        return dto;
+    }
+}
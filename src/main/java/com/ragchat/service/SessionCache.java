@@ -0,0 +1,89 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ragchat.domain.ChatSession;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// Bounded cache of session existence and metadata in front of ChatSessionRepository.findById.
+// Only sessions known to exist are cached; entries are evicted on rename, favorite and delete,
+// and expire after a while so deletes made by other instances are eventually observed. Appends
+// do not rely on the cache for that: ChatService.recordActivity skips tombstoned sessions.
+// Puts and evictions wait for the surrounding transaction to commit, so a rolled back create is
+// never cached and a reader cannot cache the old row again between the eviction and the commit.
+@Component
+public class SessionCache {
+
+    private final ChatSessionRepository sessionRepository;
+    private final Cache<UUID, SessionMetadata> cache;
+
+    public SessionCache(ChatSessionRepository sessionRepository,
+                        @Value("${session-cache.maximum-size:100000}") long maximumSize,
+                        @Value("${session-cache.expire-after-write:10m}") Duration expireAfterWrite,
+                        MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sessionCache");
+    }
+
+    // Returns cached metadata, loading it on a miss; throws when the session does not exist.
+    public SessionMetadata require(UUID sessionId) {
+        SessionMetadata metadata = cache.get(sessionId, id ->
+                sessionRepository.findById(id)
+                        .map(SessionMetadata::of)
+                        .orElse(null));
+        if (metadata == null) {
+            throw new ResourceNotFoundException("Session not found");
+        }
+        return metadata;
+    }
+
+    public boolean contains(UUID sessionId) {
+        return cache.getIfPresent(sessionId) != null;
+    }
+
+    // Cached metadata or null; never loads
+    public SessionMetadata getIfPresent(UUID sessionId) {
+        return cache.getIfPresent(sessionId);
+    }
+
+    public void put(ChatSession session) {
+        SessionMetadata metadata = SessionMetadata.of(session);
+        afterCommit(() -> cache.put(metadata.id(), metadata));
+    }
+
+    public void evict(UUID sessionId) {
+        afterCommit(() -> cache.invalidate(sessionId));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.ragchat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Fan-out of a session's events to its subscribers on this instance (the SSE endpoint
+// /sessions/{id}/events). Publishing only queues the event: each subscriber has a bounded queue
+// drained by one of the sender threads, so a slow client never holds up the publisher (which may
+// hold a stream's lock) or the other subscribers. A subscriber whose queue overflows or whose
+// listener throws is dropped. On shutdown every subscription is completed.
+@Component
+public class SessionEvents {
+
+    public static final String MESSAGE_CREATED = "message.created";
+    public static final String STREAM_STARTED = "message.started";
+    public static final String STREAM_DELTA = "message.delta";
+    public static final String STREAM_COMPLETED = "message.completed";
+    public static final String STREAM_ABORTED = "message.aborted";
+
+    public record Event(String type, Object data) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SessionEvents.class);
+
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final int maxSubscribers;
+    private final int queueCapacity;
+    private final ExecutorService senders;
+    private final Counter overflows;
+
+    @Autowired
+    public SessionEvents(@Value("${streaming.max-subscribers:10000}") int maxSubscribers,
+                         @Value("${streaming.subscriber-queue-capacity:1024}") int queueCapacity,
+                         @Value("${streaming.sender-threads:8}") int senderThreads,
+                         MeterRegistry meterRegistry) {
+        this(maxSubscribers, queueCapacity, Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "session-events-sender");
+            thread.setDaemon(true);
+            return thread;
+        }), meterRegistry);
+    }
+
+    SessionEvents(int maxSubscribers, int queueCapacity, ExecutorService senders, MeterRegistry meterRegistry) {
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = queueCapacity;
+        this.senders = senders;
+        Gauge.builder("chat.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open subscriptions to session events")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("chat.events.overflows")
+                .description("Subscribers dropped because they fell too far behind")
+                .register(meterRegistry);
+    }
+
+    // The replay events are computed once the subscription is registered and queued ahead of
+    // anything published later. onDropped runs on a sender thread when the subscriber is dropped
+    // for falling behind, and on the closing thread at shutdown. Returns the action that ends the subscription; calling it more than once
+    // is harmless.
+    Runnable subscribe(UUID sessionId, Consumer<Event> listener, Runnable onDropped,
+                       Supplier<List<Event>> replay) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManyStreamsException("Too many event subscribers, retry shortly");
+        }
+        Subscriber subscriber = new Subscriber(sessionId, listener, onDropped);
+        subscribers.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        for (Event event : replay.get()) {
+            subscriber.offer(event);
+        }
+        return () -> unsubscribe(subscriber);
+    }
+
+    void publish(UUID sessionId, String type, Object data) {
+        Set<Subscriber> listeners = subscribers.get(sessionId);
+        if (listeners == null) {
+            return;
+        }
+        Event event = new Event(type, data);
+        for (Subscriber subscriber : listeners) {
+            subscriber.offer(event);
+        }
+    }
+
+    // Inside a transaction the event waits for the commit and is dropped on rollback, so
+    // subscribers never see a message that was not stored
+    void publishAfterCommit(UUID sessionId, String type, Object data) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(sessionId, type, data);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(sessionId, type, data);
+            }
+        });
+    }
+
+    // Ends every subscription: the senders stop after the event they are delivering, then each
+    // subscriber is completed, so clients see the stream end instead of a dropped connection
+    @PreDestroy
+    void close() {
+        List<Subscriber> open = new ArrayList<>();
+        subscribers.values().forEach(open::addAll);
+        open.forEach(this::unsubscribe);
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(5, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber subscriber : open) {
+            try {
+                subscriber.onDropped.run();
+            } catch (RuntimeException ex) {
+                log.debug("Completing subscriber of session {} failed: {}", subscriber.sessionId, ex.toString());
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.computeIfPresent(subscriber.sessionId, (id, listeners) -> {
+            if (listeners.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    private final class Subscriber {
+
+        final UUID sessionId;
+        final Consumer<Event> listener;
+        final Runnable onDropped;
+        final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Set while a drain is queued or running, so at most one sender serves the subscriber
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+        volatile boolean overflowed;
+
+        Subscriber(UUID sessionId, Consumer<Event> listener, Runnable onDropped) {
+            this.sessionId = sessionId;
+            this.listener = listener;
+            this.onDropped = onDropped;
+        }
+
+        void offer(Event event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                log.debug("Dropping subscriber of session {}: {} events behind", sessionId, queueCapacity);
+                overflows.increment();
+                overflowed = true;
+                unsubscribe(this);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException ex) {
+                    // Shutting down: close() completes the subscriber
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                Event event;
+                while (!closed && (event = queue.poll()) != null) {
+                    try {
+                        listener.accept(event);
+                    } catch (RuntimeException ex) {
+                        log.debug("Dropping subscriber of session {}: {}", sessionId, ex.toString());
+                        unsubscribe(this);
+                    }
+                }
+                if (overflowed) {
+                    overflowed = false;
+                    queue.clear();
+                    onDropped.run();
+                }
+                draining.set(false);
+                // Picks up an event or an overflow that arrived after the last check but before the
+                // flag was cleared, when the offering thread saw the drain still running
+            } while ((overflowed || !closed && !queue.isEmpty()) && draining.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ChatSession;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+// Immutable copy of the session columns kept in SessionCache; never a managed entity.
+public record SessionMetadata(UUID id,
+                              String userId,
+                              String title,
+                              boolean favorite,
+                              OffsetDateTime createdAt,
+                              OffsetDateTime updatedAt) {
+
+    static SessionMetadata of(ChatSession session) {
+        return new SessionMetadata(
+                session.getId(),
+                session.getUserId(),
+                session.getTitle(),
+                session.isFavorite(),
+                session.getCreatedAt(),
+                session.getUpdatedAt());
+    }
+}
@@ -0,0 +1,91 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import com.ragchat.repository.DeletedSessionView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Removes tombstoned sessions (see ChatService.deleteSession) and their messages in the background.
+// Each transaction deletes at most batch-size messages, so no statement holds locks for long or
+// produces a burst of WAL, however large the deleted sessions are. Tombstones are locked with
+// SKIP LOCKED, so all replicas can run the purger.
+@Component
+public class SessionPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionPurger.class);
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int sessionsPerBatch;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Counter purgedSessions;
+    private final Counter purgedMessages;
+
+    public SessionPurger(ChatSessionRepository sessionRepository,
+                         ChatMessageRepository messageRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${session-purge.sessions-per-batch:100}") int sessionsPerBatch,
+                         @Value("${session-purge.batch-size:1000}") int batchSize,
+                         @Value("${session-purge.max-batches-per-run:100}") int maxBatchesPerRun,
+                         MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sessionsPerBatch = sessionsPerBatch;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.purgedSessions = Counter.builder("sessions.purged")
+                .description("Deleted sessions removed from the database")
+                .register(meterRegistry);
+        this.purgedMessages = Counter.builder("sessions.purged.messages")
+                .description("Messages of deleted sessions removed from the database")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${session-purge.interval:PT10S}", initialDelayString = "PT30S")
+    public void run() {
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                if (!purgeBatch()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Session purge failed, retrying on the next run", ex);
+        }
+    }
+
+    // Deletes up to batchSize messages from the oldest tombstoned sessions, and the sessions left
+    // empty. Returns false once no tombstone is left to work on.
+    boolean purgeBatch() {
+        Boolean more = transactionTemplate.execute(status -> {
+            List<DeletedSessionView> sessions = sessionRepository.lockDeleted(sessionsPerBatch);
+            int budget = batchSize;
+            for (DeletedSessionView session : sessions) {
+                int messages = messageRepository.deleteBatch(session.getId(),
+                        session.getCreatedAt().minus(ChatService.CLOCK_SKEW_SLACK), budget);
+                purgedMessages.increment(messages);
+                budget -= messages;
+                if (budget == 0) {
+                    // The session may still have messages; the next batch continues with it
+                    return true;
+                }
+                purgedSessions.increment(sessionRepository.purge(session.getId()));
+            }
+            return sessions.size() == sessionsPerBatch;
+        });
+        return Boolean.TRUE.equals(more);
+    }
+}
@@ -0,0 +1,9 @@
+package com.ragchat.service;
+
+// The instance already serves as many open streams or event subscriptions as it is configured for
+public class TooManyStreamsException extends RuntimeException {
+
+    public TooManyStreamsException(String message) {
+        super(message);
+    }
+}
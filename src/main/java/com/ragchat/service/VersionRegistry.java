@@ -0,0 +1,89 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory versions of each user's session list and each session's messages, from which the
+// list and message endpoints derive ETags, so an unchanged poll is answered with 304 without a
+// query. Writes bump the versions after their transaction commits: a request that read the old
+// version before the commit can only have produced a tag that no longer matches.
+//
+// Versions are drawn from one counter and tagged with a per-process epoch, so a version that was
+// evicted, expired or lost in a restart is never reissued for different data. Entries expire
+// etag.version-ttl after their last bump; this bounds how long another instance's writes, which
+// this instance does not see, can be answered with 304.
+@Component
+public class VersionRegistry {
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final AtomicLong sequence = new AtomicLong();
+    // Keys are "user:<id>" and "session:<id>"
+    private final Cache<String, Long> versions;
+
+    public VersionRegistry(@Value("${etag.version-ttl:PT30S}") Duration versionTtl,
+                           @Value("${etag.max-versions:200000}") long maxVersions) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxVersions)
+                .expireAfterWrite(versionTtl)
+                .build();
+    }
+
+    // ETag of a user's session list for the given query parameters
+    public String sessionsTag(String userId, Object... parameters) {
+        return tag("user:" + userId, parameters);
+    }
+
+    // ETag of a session's messages for the given query parameters
+    public String messagesTag(UUID sessionId, Object... parameters) {
+        return tag("session:" + sessionId, parameters);
+    }
+
+    // Current version of a session's messages. It changes once every write through this instance
+    // commits, and when the entry expires.
+    public long messagesVersion(UUID sessionId) {
+        return version("session:" + sessionId);
+    }
+
+    // Either argument may be null. Inside a transaction the bump waits for the commit and is
+    // dropped on rollback.
+    public void recordWrite(String userId, UUID sessionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(userId, sessionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump(userId, sessionId);
+            }
+        });
+    }
+
+    private void bump(String userId, UUID sessionId) {
+        if (userId != null) {
+            versions.put("user:" + userId, sequence.incrementAndGet());
+        }
+        if (sessionId != null) {
+            versions.put("session:" + sessionId, sequence.incrementAndGet());
+        }
+    }
+
+    private long version(String key) {
+        return versions.get(key, k -> sequence.incrementAndGet());
+    }
+
+    private String tag(String key, Object... parameters) {
+        long version = version(key);
+        return "\"" + epoch + "-" + Long.toHexString(version) + "-" + Integer.toHexString(Arrays.hashCode(parameters)) + "\"";
+    }
+}
@@ -0,0 +1,52 @@
+-- Context compression. context_zstd already holds zstd frames, so PostgreSQL is told not to try
+-- compressing it again when it moves values to TOAST (metadata-only change).
+
+ALTER TABLE chat_messages ALTER COLUMN context_zstd SET STORAGE EXTERNAL;
+
+-- Content-addressed context chunks (see ContextChunkStore). A message keeps its context as a
+-- compressed recipe (context_recipe) plus the SHA-256 hashes of the chunks it references, 32 bytes
+-- each and in order (context_chunks). Chunks are immutable; last_used_at is refreshed at most once
+-- per context-chunks.freshen-after while messages keep referencing a chunk, and the sweeper only
+-- deletes chunks that no message references and that have not been used for the grace period.
+CREATE TABLE IF NOT EXISTS context_chunks (
+    hash         BYTEA PRIMARY KEY,
+    data         BYTEA NOT NULL,
+    raw_length   INTEGER NOT NULL,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now(),
+    last_used_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+ALTER TABLE context_chunks ALTER COLUMN data SET STORAGE EXTERNAL;
+ALTER TABLE chat_messages ALTER COLUMN context_recipe SET STORAGE EXTERNAL;
+ALTER TABLE chat_messages ALTER COLUMN context_chunks SET STORAGE EXTERNAL;
+
+-- Which messages reference which chunks, written with the message (see ContextChunkStore). The
+-- sweeper probes it per candidate chunk instead of reading every message's chunk hashes. Removed
+-- with the messages by the session purger, and by created_at once their partition is retired.
+CREATE TABLE IF NOT EXISTS context_chunk_refs (
+    chunk_hash         BYTEA NOT NULL,
+    message_id         UUID NOT NULL,
+    message_created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (chunk_hash, message_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_context_chunk_refs_message_created
+    ON context_chunk_refs (message_created_at);
+
+-- References of messages chunked before the table existed. Runs once: later starts find references
+-- (or no chunk at all) and skip the scan.
+INSERT INTO context_chunk_refs (chunk_hash, message_id, message_created_at)
+SELECT DISTINCT substring(m.context_chunks FROM i * 32 + 1 FOR 32), m.id, m.created_at
+FROM chat_messages m,
+     generate_series(0, length(m.context_chunks) / 32 - 1) AS i
+WHERE m.context_chunks IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM context_chunk_refs)
+  AND EXISTS (SELECT 1 FROM context_chunks)
+ON CONFLICT DO NOTHING;
+
+-- Backlog of rows still holding a whole context (TEXT or zstd); the migrator rewrites them into
+-- recipes. Replaces the index of the compression-only backlog.
+DROP INDEX IF EXISTS idx_chat_messages_uncompressed_context;
+CREATE INDEX IF NOT EXISTS idx_chat_messages_unchunked_context
+    ON chat_messages (id)
+    WHERE context IS NOT NULL OR context_zstd IS NOT NULL;
@@ -0,0 +1,10 @@
+-- Indexes Hibernate cannot express through @Index; applied after ddl-auto on every start.
+
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_user_favorite_updated_id
+    ON chat_sessions (user_id, updated_at DESC, id)
+    WHERE favorite;
+
+-- Tombstoned sessions waiting for SessionPurger
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_deleted
+    ON chat_sessions (deleted_at)
+    WHERE deleted_at IS NOT NULL;
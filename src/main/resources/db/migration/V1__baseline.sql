@@ -0,0 +1,104 @@
+-- Schema of release 1.0.0: the tables Hibernate creates with ddl-auto: update plus the db/*.sql
+-- scripts, with chat_messages created partitioned right away. Constraint names match the ones
+-- Hibernate generates, so both ways of building the schema end up identical.
+
+CREATE TABLE chat_sessions (
+    id                   UUID PRIMARY KEY,
+    user_id              VARCHAR(255) NOT NULL,
+    title                VARCHAR(255) NOT NULL,
+    favorite             BOOLEAN NOT NULL,
+    created_at           TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at           TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    deleted_at           TIMESTAMP(6) WITH TIME ZONE,
+    last_message_at      TIMESTAMP(6) WITH TIME ZONE,
+    message_count        BIGINT NOT NULL DEFAULT 0,
+    last_sender          VARCHAR(255),
+    last_message_preview VARCHAR(200)
+);
+
+CREATE INDEX idx_chat_sessions_user_updated_id
+    ON chat_sessions (user_id, updated_at DESC, id);
+
+CREATE INDEX idx_chat_sessions_user_favorite_updated_id
+    ON chat_sessions (user_id, updated_at DESC, id)
+    WHERE favorite;
+
+CREATE INDEX idx_chat_sessions_deleted
+    ON chat_sessions (deleted_at)
+    WHERE deleted_at IS NOT NULL;
+
+CREATE INDEX idx_chat_sessions_title_tsv
+    ON chat_sessions USING GIN (to_tsvector('english', title));
+
+-- Range-partitioned by created_at month; MessagePartitionMaintenance creates the monthly partitions
+CREATE TABLE chat_messages (
+    id             UUID NOT NULL,
+    session_id     UUID NOT NULL,
+    sender         VARCHAR(255) NOT NULL,
+    content        VARCHAR(4000) NOT NULL,
+    context        TEXT,
+    context_zstd   BYTEA,
+    context_recipe BYTEA,
+    context_chunks BYTEA,
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    content_tsv    TSVECTOR GENERATED ALWAYS AS (to_tsvector('english', content)) STORED,
+    CONSTRAINT chat_messages_pkey PRIMARY KEY (id, created_at),
+    CONSTRAINT fk3cpkdtwdxndrjhrx3gt9q5ux9 FOREIGN KEY (session_id) REFERENCES chat_sessions (id)
+) PARTITION BY RANGE (created_at);
+
+ALTER TABLE chat_messages ALTER COLUMN context_zstd SET STORAGE EXTERNAL;
+ALTER TABLE chat_messages ALTER COLUMN context_recipe SET STORAGE EXTERNAL;
+ALTER TABLE chat_messages ALTER COLUMN context_chunks SET STORAGE EXTERNAL;
+
+CREATE INDEX idx_chat_messages_session_created_id
+    ON chat_messages (session_id, created_at, id);
+
+CREATE INDEX idx_chat_messages_content_tsv
+    ON chat_messages USING GIN (content_tsv);
+
+CREATE INDEX idx_chat_messages_unchunked_context
+    ON chat_messages (id)
+    WHERE context IS NOT NULL OR context_zstd IS NOT NULL;
+
+-- Everything up to the end of the current month, like the partition a ddl-auto table is converted
+-- into; later months are created by MessagePartitionMaintenance on startup
+DO $$
+BEGIN
+    EXECUTE format('CREATE TABLE chat_messages_legacy PARTITION OF chat_messages FOR VALUES FROM (MINVALUE) TO (%L)',
+                   (date_trunc('month', now() AT TIME ZONE 'UTC') + interval '1 month') AT TIME ZONE 'UTC');
+END
+$$;
+
+CREATE TABLE api_keys (
+    id         UUID PRIMARY KEY,
+    key_hash   BYTEA NOT NULL,
+    name       VARCHAR(255),
+    tenant_id  VARCHAR(255) NOT NULL,
+    tier       VARCHAR(255) NOT NULL,
+    scopes     VARCHAR(255) NOT NULL,
+    enabled    BOOLEAN NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT uk_cwrf6urvb9lnvuli1giq8t2k9 UNIQUE (key_hash)
+);
+
+CREATE TABLE context_dictionaries (
+    id           BIGINT PRIMARY KEY,
+    content      BYTEA NOT NULL,
+    sample_count INTEGER NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE context_chunks (
+    hash         BYTEA PRIMARY KEY,
+    data         BYTEA NOT NULL,
+    raw_length   INTEGER NOT NULL,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now(),
+    last_used_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+ALTER TABLE context_chunks ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE TABLE rate_limit_buckets (
+    id    VARCHAR(255) PRIMARY KEY,
+    state BYTEA
+);
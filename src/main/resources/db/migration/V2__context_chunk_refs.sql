@@ -0,0 +1,20 @@
+-- Which messages reference which chunks (see db/context-compression.sql), with the references of
+-- the messages chunked so far. IF NOT EXISTS and ON CONFLICT because a database adopted as version
+-- 1 may have been built by a standard-mode start that already created and filled the table.
+
+CREATE TABLE IF NOT EXISTS context_chunk_refs (
+    chunk_hash         BYTEA NOT NULL,
+    message_id         UUID NOT NULL,
+    message_created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (chunk_hash, message_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_context_chunk_refs_message_created
+    ON context_chunk_refs (message_created_at);
+
+INSERT INTO context_chunk_refs (chunk_hash, message_id, message_created_at)
+SELECT DISTINCT substring(m.context_chunks FROM i * 32 + 1 FOR 32), m.id, m.created_at
+FROM chat_messages m,
+     generate_series(0, length(m.context_chunks) / 32 - 1) AS i
+WHERE m.context_chunks IS NOT NULL
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,5 @@
+-- Shared token-bucket state for rate-limiting.mode=postgres, one row per API key
+CREATE TABLE IF NOT EXISTS rate_limit_buckets (
+    id    VARCHAR(255) PRIMARY KEY,
+    state BYTEA
+);
@@ -0,0 +1,12 @@
+-- Full-text search. The generated column is maintained by PostgreSQL on every insert/update;
+-- adding it to an existing table rewrites the table once.
+
+ALTER TABLE chat_messages
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_content_tsv
+    ON chat_messages USING GIN (content_tsv);
+
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_title_tsv
+    ON chat_sessions USING GIN (to_tsvector('english', title));
@@ -0,0 +1,26 @@
+-- Backfills the activity columns of sessions that predate them (see ChatSessionRepository.recordMessages).
+-- Only sessions without a recorded message are visited, so after the first start this is an index
+-- probe per empty session.
+
+UPDATE chat_sessions s
+SET message_count = counted.message_count,
+    last_message_at = latest.created_at,
+    last_sender = latest.sender,
+    last_message_preview = left(latest.content, 200)
+FROM chat_sessions pending
+CROSS JOIN LATERAL (
+    SELECT m.created_at, m.sender, m.content
+    FROM chat_messages m
+    WHERE m.session_id = pending.id
+      AND m.created_at >= pending.created_at - interval '1 day'
+    ORDER BY m.created_at DESC, m.id DESC
+    LIMIT 1
+) latest
+CROSS JOIN LATERAL (
+    SELECT count(*) AS message_count
+    FROM chat_messages m
+    WHERE m.session_id = pending.id
+      AND m.created_at >= pending.created_at - interval '1 day'
+) counted
+WHERE s.id = pending.id
+  AND pending.last_message_at IS NULL;
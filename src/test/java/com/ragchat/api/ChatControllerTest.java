@@ -2,6 +2,10 @@ package com.ragchat.api;
 
 import com.ragchat.api.dto.*;
 import com.ragchat.service.ChatService;
+import com.ragchat.service.MessageExportService;
+import com.ragchat.service.ResourceNotFoundException;
+import com.ragchat.service.SearchService;
+import com.ragchat.service.VersionRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
@@ -9,6 +13,7 @@ import org.mockito.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,6 +25,15 @@ class ChatControllerTest {
     @Mock
     private ChatService chatService;
 
+    @Mock
+    private MessageExportService messageExportService;
+
+    @Mock
+    private SearchService searchService;
+
+    @Spy
+    private VersionRegistry versionRegistry = new VersionRegistry(Duration.ofSeconds(30), 1000);
+
     @InjectMocks
     private ChatController chatController;
 
@@ -52,13 +66,57 @@ class ChatControllerTest {
         when(chatService.listSessions("Ram"))
                 .thenReturn(list);
 
-        var result = chatController.listSessions("Ram");
+        var result = chatController.listSessions("Ram", null, null, null, null);
 
         assertEquals(200, result.getStatusCode().value());
         assertEquals(list, result.getBody());
         verify(chatService).listSessions("Ram");
     }
 
+    @Test
+    void listSessions_withFavoriteFilter_shouldUsePaginatedListing() {
+
+        CursorPageResponse<ChatSessionResponse> page =
+                new CursorPageResponse<>(Collections.emptyList(), null, null);
+
+        when(chatService.listSessionsByCursor("Ram", true, null, null))
+                .thenReturn(page);
+
+        var result = chatController.listSessions("Ram", null, null, true, null);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(page, result.getBody());
+        verify(chatService, never()).listSessions(any());
+    }
+
+    @Test
+    void listSessions_withCurrentETag_shouldReturnNotModifiedWithoutQuerying() {
+
+        when(chatService.listSessions("Ram"))
+                .thenReturn(new ArrayList<>());
+
+        String etag = chatController.listSessions("Ram", null, null, null, null).getHeaders().getETag();
+        var result = chatController.listSessions("Ram", null, null, null, etag);
+
+        assertEquals(304, result.getStatusCode().value());
+        assertEquals(etag, result.getHeaders().getETag());
+        verify(chatService, times(1)).listSessions("Ram");
+    }
+
+    @Test
+    void listSessions_afterWrite_shouldReturnNewETag() {
+
+        when(chatService.listSessions("Ram"))
+                .thenReturn(new ArrayList<>());
+
+        String etag = chatController.listSessions("Ram", null, null, null, null).getHeaders().getETag();
+        versionRegistry.recordWrite("Ram", null);
+        var result = chatController.listSessions("Ram", null, null, null, etag);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertNotEquals(etag, result.getHeaders().getETag());
+    }
+
     // ---------------- RENAME SESSION ----------------
 
     @Test
@@ -133,6 +191,64 @@ class ChatControllerTest {
         verify(chatService).addMessage(id, request);
     }
 
+    @Test
+    void addMessage_whenWriteBehindEnabled_shouldReturnAccepted() {
+
+        UUID id = UUID.randomUUID();
+
+        AddMessageRequest request = new AddMessageRequest();
+        ChatMessageResponse response = new ChatMessageResponse();
+
+        when(chatService.isWriteBehindEnabled())
+                .thenReturn(true);
+        when(chatService.enqueueMessage(id, request))
+                .thenReturn(response);
+
+        var result = chatController.addMessage(id, request);
+
+        assertEquals(202, result.getStatusCode().value());
+        assertEquals(response, result.getBody());
+        verify(chatService, never()).addMessage(any(), any());
+    }
+
+    // ---------------- BULK DELETE SESSIONS ----------------
+
+    @Test
+    void deleteSessionsBatch_shouldReturnOk() {
+
+        BulkDeleteSessionsRequest request = new BulkDeleteSessionsRequest();
+        request.setSessionIds(List.of(UUID.randomUUID()));
+
+        BulkDeleteSessionsResponse response = new BulkDeleteSessionsResponse();
+
+        when(chatService.deleteSessions(request.getSessionIds()))
+                .thenReturn(response);
+
+        var result = chatController.deleteSessionsBatch(request);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(response, result.getBody());
+    }
+
+    // ---------------- BULK ADD MESSAGES ----------------
+
+    @Test
+    void addMessagesBatch_shouldReturnOk() {
+
+        BulkAddMessagesRequest request = new BulkAddMessagesRequest();
+        request.setMessages(List.of(new BulkMessageItem()));
+
+        BulkAddMessagesResponse response = new BulkAddMessagesResponse();
+
+        when(chatService.addMessages(request.getMessages()))
+                .thenReturn(response);
+
+        var result = chatController.addMessagesBatch(request);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(response, result.getBody());
+    }
+
     // ---------------- GET MESSAGES ----------------
 
     @Test
@@ -143,12 +259,190 @@ class ChatControllerTest {
         Page<ChatMessageResponse> page =
                 new PageImpl<>(Collections.emptyList());
 
-        when(chatService.getMessages(id, 0, 20))
+        when(chatService.getMessages(id, 0, 20, false))
+                .thenReturn(page);
+
+        var result = chatController.getMessages(id, 0, 20, null, null, false, null);
+
+        assertEquals(200, result.getStatusCode().value());
+        verify(chatService).getMessages(id, 0, 20, false);
+    }
+
+    @Test
+    void getMessages_withCursor_shouldUseKeysetPagination() {
+
+        UUID id = UUID.randomUUID();
+
+        CursorPageResponse<ChatMessageResponse> slice =
+                new CursorPageResponse<>(Collections.emptyList(), null, null);
+
+        when(chatService.getMessagesByCursor(id, "", null, 20, true))
+                .thenReturn(slice);
+
+        var result = chatController.getMessages(id, 0, 20, "", null, true, null);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(slice, result.getBody());
+        verify(chatService, never()).getMessages(any(), anyInt(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void getMessages_withETagOfOtherPage_shouldReturnOk() {
+
+        UUID id = UUID.randomUUID();
+
+        when(chatService.getMessages(eq(id), anyInt(), eq(20), eq(false)))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
+
+        String etag = chatController.getMessages(id, 0, 20, null, null, false, null).getHeaders().getETag();
+        var result = chatController.getMessages(id, 1, 20, null, null, false, "W/" + etag);
+
+        assertEquals(200, result.getStatusCode().value());
+    }
+
+    @Test
+    void getMessages_withAnyETag_shouldReturnNotModifiedForExistingSession() {
+
+        UUID id = UUID.randomUUID();
+
+        var result = chatController.getMessages(id, 0, 20, null, null, false, "*");
+
+        assertEquals(304, result.getStatusCode().value());
+        verify(chatService).requireSession(id);
+        verify(chatService, never()).getMessages(any(), anyInt(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void getMessages_withAnyETag_whenSessionMissing_shouldThrowNotFound() {
+
+        UUID id = UUID.randomUUID();
+
+        doThrow(new ResourceNotFoundException("Session not found")).when(chatService).requireSession(id);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatController.getMessages(id, 0, 20, null, null, false, "*"));
+    }
+
+    // ---------------- RECENT MESSAGES ----------------
+
+    @Test
+    void getRecentMessages_shouldReturnOk() {
+
+        UUID id = UUID.randomUUID();
+
+        List<ChatMessageResponse> tail = List.of(new ChatMessageResponse());
+
+        when(chatService.getRecentMessages(id, 10))
+                .thenReturn(tail);
+
+        var result = chatController.getRecentMessages(id, 10);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(tail, result.getBody());
+    }
+
+    // ---------------- EXPORT MESSAGES ----------------
+
+    @Test
+    void exportMessages_shouldStreamNdjson() throws Exception {
+
+        UUID id = UUID.randomUUID();
+
+        var result = chatController.exportMessages(id, true);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals("application/x-ndjson", result.getHeaders().getContentType().toString());
+
+        var out = new java.io.ByteArrayOutputStream();
+        result.getBody().writeTo(out);
+        verify(messageExportService).exportMessages(id, true, out);
+    }
+
+    @Test
+    void exportMessages_whenSessionMissing_shouldFailBeforeStreaming() {
+
+        UUID id = UUID.randomUUID();
+
+        doThrow(new ResourceNotFoundException("Session not found"))
+                .when(messageExportService).checkSessionExists(id);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatController.exportMessages(id, true));
+    }
+
+    // ---------------- STREAMED MESSAGES ----------------
+
+    @Test
+    void appendToMessageStream_shouldReturnNoContent() {
+
+        UUID sessionId = UUID.randomUUID();
+        UUID messageId = UUID.randomUUID();
+        MessageDeltaRequest request = new MessageDeltaRequest();
+        request.setContent("Hel");
+
+        var result = chatController.appendToMessageStream(sessionId, messageId, request);
+
+        assertEquals(204, result.getStatusCode().value());
+        verify(chatService).appendToMessageStream(sessionId, messageId, "Hel");
+    }
+
+    @Test
+    void completeMessageStream_withoutBody_shouldStoreWithoutContext() {
+
+        UUID sessionId = UUID.randomUUID();
+        UUID messageId = UUID.randomUUID();
+        ChatMessageResponse response = new ChatMessageResponse();
+
+        when(chatService.completeMessageStream(sessionId, messageId, null))
+                .thenReturn(response);
+
+        var result = chatController.completeMessageStream(sessionId, messageId, null);
+
+        assertEquals(201, result.getStatusCode().value());
+        assertEquals(response, result.getBody());
+    }
+
+    @Test
+    void abortMessageStream_whenNotOpen_shouldThrowNotFound() {
+
+        UUID sessionId = UUID.randomUUID();
+        UUID messageId = UUID.randomUUID();
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatController.abortMessageStream(sessionId, messageId));
+    }
+
+    @Test
+    void sessionEvents_shouldUnsubscribeWhenEmitterCompletes() {
+
+        UUID id = UUID.randomUUID();
+        Runnable unsubscribe = mock(Runnable.class);
+        ChatController controller = new ChatController(chatService, messageExportService, searchService,
+                versionRegistry, Duration.ofMinutes(30));
+
+        when(chatService.subscribeToEvents(eq(id), any(), any()))
+                .thenReturn(unsubscribe);
+
+        var emitter = controller.sessionEvents(id);
+
+        assertEquals(Duration.ofMinutes(30).toMillis(), emitter.getTimeout());
+        verify(chatService).subscribeToEvents(eq(id), any(), any());
+    }
+
+    // ---------------- SEARCH ----------------
+
+    @Test
+    void search_shouldReturnOk() {
+
+        CursorPageResponse<SearchHitResponse> page =
+                new CursorPageResponse<>(Collections.emptyList(), null, null);
+
+        when(searchService.search("Ram", "vector", null, 10))
                 .thenReturn(page);
 
-        var result = chatController.getMessages(id, 0, 20);
+        var result = chatController.search("Ram", "vector", null, 10);
 
         assertEquals(200, result.getStatusCode().value());
-        verify(chatService).getMessages(id, 0, 20);
+        assertEquals(page, result.getBody());
     }
-}
\ No newline at end of file
+}
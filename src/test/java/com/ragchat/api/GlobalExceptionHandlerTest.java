@@ -0,0 +1,22 @@
+package com.ragchat.api;
+
+import com.ragchat.service.TooManyStreamsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @Test
+    void handleTooManyStreams_shouldAskToRetry() {
+
+        var result = handler.handleTooManyStreams(new TooManyStreamsException("Too many event subscribers"));
+
+        assertEquals(503, result.getStatusCode().value());
+        assertEquals("1", result.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("Too many event subscribers", result.getBody().get("message"));
+    }
+}
@@ -1,17 +1,35 @@
 package com.ragchat.config;
 
+import com.ragchat.service.ApiKeyPrincipal;
+import com.ragchat.service.ApiKeyRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
 import org.springframework.mock.web.*;
-import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
 class ApiKeyAuthFilterTest {
 
+    @Mock
+    private ApiKeyRegistry apiKeyRegistry;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void shouldSkipPublicEndpoint() throws Exception {
 
-        ApiKeyAuthFilter filter = new ApiKeyAuthFilter();
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setRequestURI("/actuator/health");
@@ -21,13 +39,13 @@ class ApiKeyAuthFilterTest {
         filter.doFilter(request, response, (req, res) -> {});
 
         assertEquals(200, response.getStatus());
+        verifyNoInteractions(apiKeyRegistry);
     }
 
     @Test
     void shouldReturn401WhenMissing() throws Exception {
 
-        ApiKeyAuthFilter filter = new ApiKeyAuthFilter();
-        ReflectionTestUtils.setField(filter, "expectedApiKey", "valid-key");
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setRequestURI("/api/v1/sessions");
@@ -37,13 +55,56 @@ class ApiKeyAuthFilterTest {
         filter.doFilter(request, response, (req, res) -> {});
 
         assertEquals(401, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid API key"));
+    }
+
+    @Test
+    void shouldReturn401WhenUnknown() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/api/v1/sessions");
+        request.addHeader("X-API-KEY", "unknown-key");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        when(apiKeyRegistry.isLoaded())
+                .thenReturn(true);
+
+        filter.doFilter(request, response, (req, res) -> {});
+
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void shouldReturn503BeforeKeysAreLoaded() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/api/v1/sessions");
+        request.addHeader("X-API-KEY", "valid-key");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        when(apiKeyRegistry.isLoaded())
+                .thenReturn(false);
+
+        filter.doFilter(request, response, (req, res) -> fail("request must not pass"));
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
     }
 
     @Test
     void shouldAllowWhenValid() throws Exception {
 
-        ApiKeyAuthFilter filter = new ApiKeyAuthFilter();
-        ReflectionTestUtils.setField(filter, "expectedApiKey", "valid-key");
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+        ApiKeyPrincipal principal = principal(Set.of("read", "write"));
+
+        when(apiKeyRegistry.authenticate("valid-key"))
+                .thenReturn(principal);
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setRequestURI("/api/v1/sessions");
@@ -51,8 +112,87 @@ class ApiKeyAuthFilterTest {
 
         MockHttpServletResponse response = new MockHttpServletResponse();
 
-        filter.doFilter(request, response, (req, res) -> {});
+        filter.doFilter(request, response, (req, res) ->
+                assertEquals(principal, SecurityContextHolder.getContext().getAuthentication().getPrincipal()));
 
         assertNotEquals(401, response.getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldUseConfiguredHeader() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-Tenant-Key");
+
+        when(apiKeyRegistry.authenticate("valid-key"))
+                .thenReturn(principal(Set.of("read")));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+        request.addHeader("X-Tenant-Key", "valid-key");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {});
+
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void shouldReturn403WhenScopeMissing() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+
+        when(apiKeyRegistry.authenticate("read-only-key"))
+                .thenReturn(principal(Set.of("read")));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/sessions");
+        request.addHeader("X-API-KEY", "read-only-key");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> fail("chain must not run"));
+
+        assertEquals(403, response.getStatus());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void shouldReturn401ForPrometheusScrapeWithoutKey() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), response,
+                (req, res) -> fail("chain must not run"));
+
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void shouldRequireMetricsScopeForActuator() throws Exception {
+
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(apiKeyRegistry, "X-API-KEY");
+
+        when(apiKeyRegistry.authenticate("read-key"))
+                .thenReturn(principal(Set.of("read", "write")));
+        when(apiKeyRegistry.authenticate("metrics-key"))
+                .thenReturn(principal(Set.of("metrics")));
+
+        MockHttpServletRequest readRequest = new MockHttpServletRequest("GET", "/actuator/metrics");
+        readRequest.addHeader("X-API-KEY", "read-key");
+        MockHttpServletResponse readResponse = new MockHttpServletResponse();
+        MockHttpServletRequest metricsRequest = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        metricsRequest.addHeader("X-API-KEY", "metrics-key");
+        MockHttpServletResponse metricsResponse = new MockHttpServletResponse();
+
+        filter.doFilter(readRequest, readResponse, (req, res) -> fail("chain must not run"));
+        filter.doFilter(metricsRequest, metricsResponse, (req, res) -> {});
+
+        assertEquals(403, readResponse.getStatus());
+        assertEquals(200, metricsResponse.getStatus());
+    }
+
+    private ApiKeyPrincipal principal(Set<String> scopes) {
+        return ApiKeyPrincipal.of(UUID.randomUUID(), "acme", scopes, "standard", 60);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ragchat.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.*;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadFilterTest {
+
+    @Test
+    void shouldRejectWhenAllPermitsTaken() throws Exception {
+
+        BulkheadFilter filter = new BulkheadFilter(1, Duration.ZERO, 0, new SimpleMeterRegistry());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/api/v1/sessions");
+
+        MockHttpServletResponse inner = new MockHttpServletResponse();
+        MockHttpServletResponse outer = new MockHttpServletResponse();
+
+        // The second request arrives while the first still holds the only permit
+        filter.doFilter(request, outer, (req, res) ->
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), inner, (r, s) -> {}));
+
+        assertEquals(200, outer.getStatus());
+        assertEquals(503, inner.getStatus());
+        assertEquals("1", inner.getHeader("Retry-After"));
+    }
+
+    @Test
+    void shouldReleasePermitAfterRequest() throws Exception {
+
+        BulkheadFilter filter = new BulkheadFilter(1, Duration.ZERO, 0, new SimpleMeterRegistry());
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), first, (req, res) -> {});
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), second, (req, res) -> {});
+
+        assertEquals(200, first.getStatus());
+        assertEquals(200, second.getStatus());
+    }
+
+    @Test
+    void shouldSkipActuator() throws Exception {
+
+        BulkheadFilter filter = new BulkheadFilter(0, Duration.ZERO, 0, new SimpleMeterRegistry());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/actuator/health");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {});
+
+        assertEquals(200, response.getStatus());
+    }
+}
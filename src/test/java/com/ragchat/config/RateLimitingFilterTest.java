@@ -1,17 +1,49 @@
 package com.ragchat.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ragchat.service.ApiKeyPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 class RateLimitingFilterTest {
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private RateLimitingFilter filter(int requestsPerMinute) {
+        RateLimitingFilter filter = new RateLimitingFilter(100, Duration.ofMinutes(10), 1000, meterRegistry, new LocalBucketFactory());
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", requestsPerMinute);
+        return filter;
+    }
+
+    private ApiKeyPrincipal authenticate(UUID keyId, int requestsPerMinute) {
+        ApiKeyPrincipal principal = ApiKeyPrincipal.of(keyId, "acme", Set.of("read"), "standard", requestsPerMinute);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.authorities()));
+        return principal;
+    }
+
     @Test
     void shouldSkipSwagger() throws Exception {
 
-        RateLimitingFilter filter = new RateLimitingFilter();
+        RateLimitingFilter filter = new RateLimitingFilter(100, Duration.ofMinutes(10), 1000, meterRegistry, new LocalBucketFactory());
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setRequestURI("/swagger-ui/index.html");
@@ -26,14 +58,11 @@ class RateLimitingFilterTest {
     @Test
     void shouldBlockWhenExceeded() throws Exception {
 
-        RateLimitingFilter filter = new RateLimitingFilter();
-
-        ReflectionTestUtils.setField(filter, "apiKeyHeader", "X-API-KEY");
-        ReflectionTestUtils.setField(filter, "requestsPerMinute", 1);
+        RateLimitingFilter filter = filter(60);
+        authenticate(UUID.randomUUID(), 1);
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setRequestURI("/api/v1/sessions");
-        request.addHeader("X-API-KEY", "test");
 
         MockHttpServletResponse response = new MockHttpServletResponse();
 
@@ -41,5 +70,147 @@ class RateLimitingFilterTest {
         filter.doFilter(request, response, (req, res) -> {});
 
         assertEquals(429, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Rate limit exceeded"));
+        assertEquals(1.0, meterRegistry.get("rate.limit.allowed").tag("tenant", "acme").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limit.rejected").tag("tenant", "acme").counter().count());
+    }
+
+    @Test
+    void shouldCountRequestsWithoutKeyAsAnonymous() throws Exception {
+
+        RateLimitingFilter filter = filter(60);
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/metrics"), new MockHttpServletResponse(), (req, res) -> {});
+
+        assertEquals(1.0, meterRegistry.get("rate.limit.allowed").tag("tenant", "anonymous").counter().count());
+    }
+
+    @Test
+    void shouldCountTenantsBeyondLimitAsOther() throws Exception {
+
+        RateLimitingFilter filter = new RateLimitingFilter(100, Duration.ofMinutes(10), 2, meterRegistry, new LocalBucketFactory());
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", 60);
+
+        for (String tenant : List.of("t1", "t2", "t3", "t4")) {
+            ApiKeyPrincipal principal = ApiKeyPrincipal.of(UUID.randomUUID(), tenant, Set.of("read"), "standard", 60);
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(principal, null, principal.authorities()));
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), new MockHttpServletResponse(), (req, res) -> {});
+        }
+
+        assertEquals(1.0, meterRegistry.get("rate.limit.allowed").tag("tenant", "t1").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limit.allowed").tag("tenant", "t2").counter().count());
+        assertEquals(2.0, meterRegistry.get("rate.limit.allowed").tag("tenant", "other").counter().count());
+        assertEquals(3, meterRegistry.find("rate.limit.allowed").counters().size());
+    }
+
+    @Test
+    void shouldApplyLimitOfKeyTier() throws Exception {
+
+        RateLimitingFilter filter = filter(1);
+        authenticate(UUID.randomUUID(), 3);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), response, (req, res) -> {});
+        }
+
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void shouldLimitRequestsWithoutKeyByClientAddress() throws Exception {
+
+        RateLimitingFilter filter = filter(1);
+
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/actuator/metrics");
+        first.setRemoteAddr("10.0.0.1");
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/actuator/metrics");
+        second.setRemoteAddr("10.0.0.1");
+        MockHttpServletRequest otherClient = new MockHttpServletRequest("GET", "/actuator/metrics");
+        otherClient.setRemoteAddr("10.0.0.2");
+
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        MockHttpServletResponse otherResponse = new MockHttpServletResponse();
+
+        filter.doFilter(first, firstResponse, (req, res) -> {});
+        filter.doFilter(second, secondResponse, (req, res) -> {});
+        filter.doFilter(otherClient, otherResponse, (req, res) -> {});
+
+        assertEquals(200, firstResponse.getStatus());
+        assertEquals(429, secondResponse.getStatus());
+        assertEquals(200, otherResponse.getStatus());
+    }
+
+    @Test
+    void shouldNotKeepMoreBucketsThanConfigured() throws Exception {
+
+        RateLimitingFilter filter = new RateLimitingFilter(10, Duration.ofMinutes(10), 1000, meterRegistry, new LocalBucketFactory());
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", 5);
+
+        for (int i = 0; i < 1000; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+            request.setRemoteAddr("10.0." + (i / 256) + "." + (i % 256));
+            filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {});
+        }
+
+        Cache<?, ?> buckets = (Cache<?, ?>) ReflectionTestUtils.getField(filter, "buckets");
+        buckets.cleanUp();
+
+        assertTrue(buckets.estimatedSize() <= 10);
+    }
+
+    @Test
+    void shouldCreateKeyedBucketsThroughFactoryOnce() throws Exception {
+
+        RateLimitBucketFactory factory = mock(RateLimitBucketFactory.class);
+        when(factory.create(anyString(), any()))
+                .thenAnswer(invocation -> new LocalBucketFactory().create(
+                        invocation.getArgument(0), invocation.getArgument(1)));
+
+        RateLimitingFilter filter = new RateLimitingFilter(100, Duration.ofMinutes(10), 1000, meterRegistry, factory);
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", 5);
+
+        UUID keyId = UUID.randomUUID();
+        authenticate(keyId, 5);
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), new MockHttpServletResponse(), (req, res) -> {});
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), new MockHttpServletResponse(), (req, res) -> {});
+
+        SecurityContextHolder.clearContext();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/metrics"), new MockHttpServletResponse(), (req, res) -> {});
+
+        verify(factory, times(1)).create(eq("key:" + keyId), any());
+        verify(factory, never()).create(startsWith("ip:"), any());
+    }
+
+    @Test
+    void shouldReconfigureBucketOfKeyWhenTierChanges() throws Exception {
+
+        RateLimitBucketFactory factory = mock(RateLimitBucketFactory.class);
+        when(factory.create(anyString(), any()))
+                .thenAnswer(invocation -> new LocalBucketFactory().create(
+                        invocation.getArgument(0), invocation.getArgument(1)));
+
+        RateLimitingFilter filter = new RateLimitingFilter(100, Duration.ofMinutes(10), 1000, meterRegistry, factory);
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", 5);
+
+        UUID keyId = UUID.randomUUID();
+        authenticate(keyId, 1);
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), first, (req, res) -> {});
+
+        // Upgraded: the spent token stays spent, the added capacity is available at once
+        authenticate(keyId, 3);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        for (int i = 0; i < 2; i++) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), response, (req, res) -> {});
+        }
+
+        assertEquals(200, first.getStatus());
+        assertEquals(200, response.getStatus());
+        verify(factory, times(1)).create(eq("key:" + keyId), any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package com.ragchat.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestStatementCounterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestStatementCounter counter = new RequestStatementCounter(meterRegistry);
+
+    @Test
+    void shouldRecordStatementsPerRouteTemplate() {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions/42/messages");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/sessions/{sessionId}/messages");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        counter.preHandle(request, response, null);
+        counter.inspect("select 1");
+        counter.inspect("select 2");
+        counter.inspect("select 3");
+        counter.afterCompletion(request, response, null, null);
+
+        DistributionSummary summary = meterRegistry.get("http.server.requests.statements")
+                .tag("method", "GET")
+                .tag("uri", "/api/v1/sessions/{sessionId}/messages")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(3.0, summary.totalAmount());
+    }
+
+    @Test
+    void shouldNotCountStatementsOutsideRequests() {
+
+        assertEquals("select 1", counter.inspect("select 1"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        counter.preHandle(request, response, null);
+        counter.afterCompletion(request, response, null, null);
+        counter.inspect("select 2");
+
+        assertEquals(0.0, meterRegistry.get("http.server.requests.statements").summary().totalAmount());
+    }
+}
@@ -0,0 +1,152 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ApiKey;
+import com.ragchat.repository.ApiKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class ApiKeyRegistryTest {
+
+    @Mock
+    private ApiKeyRepository apiKeyRepository;
+
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("rate-limiting.tiers.premium", "600");
+
+    @Test
+    void authenticate_shouldResolveStoredKeyByHash() {
+
+        ApiKey apiKey = apiKey("secret", "acme", "read", "premium");
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenReturn(List.of(apiKey));
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "", "default", 60);
+        registry.onReady();
+
+        ApiKeyPrincipal principal = registry.authenticate("secret");
+
+        assertNotNull(principal);
+        assertEquals("acme", principal.tenantId());
+        assertEquals(600, principal.requestsPerMinute());
+        assertTrue(principal.hasScope("read"));
+        assertFalse(principal.hasScope("write"));
+        assertNull(registry.authenticate("Secret"));
+    }
+
+    @Test
+    void authenticate_shouldNotQueryTableBetweenRefreshes() {
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenReturn(List.of());
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "legacy", "default", 60);
+        registry.onReady();
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(registry.authenticate("legacy"));
+        }
+
+        verify(apiKeyRepository, times(1)).findByEnabledTrue();
+    }
+
+    @Test
+    void authenticate_legacyKeyShouldBelongToDefaultTenantWithFullAccess() {
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenReturn(List.of());
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "legacy", "default", 60);
+        registry.onReady();
+
+        ApiKeyPrincipal principal = registry.authenticate("legacy");
+
+        assertEquals("default", principal.tenantId());
+        assertTrue(principal.hasScope(ApiKeyPrincipal.SCOPE_READ));
+        assertTrue(principal.hasScope(ApiKeyPrincipal.SCOPE_WRITE));
+        assertTrue(principal.hasScope(ApiKeyPrincipal.SCOPE_METRICS));
+        assertEquals(60, principal.requestsPerMinute());
+    }
+
+    @Test
+    void refresh_shouldDropRevokedKeys() {
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenReturn(List.of(apiKey("secret", "acme", "read", "standard")))
+                .thenReturn(List.of());
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "", "default", 60);
+        registry.onReady();
+
+        assertNotNull(registry.authenticate("secret"));
+
+        registry.refresh();
+
+        assertNull(registry.authenticate("secret"));
+    }
+
+    @Test
+    void refresh_whenDatabaseFails_shouldKeepLastSnapshot() {
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenReturn(List.of(apiKey("secret", "acme", "read", "standard")))
+                .thenThrow(new RuntimeException("db down"));
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "", "default", 60);
+        registry.onReady();
+
+        assertNotNull(registry.authenticate("secret"));
+
+        registry.refresh();
+
+        assertNotNull(registry.authenticate("secret"));
+    }
+
+    @Test
+    void authenticate_beforeFirstLoad_shouldRefuseWithoutQueryingTable() {
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "legacy", "default", 60);
+
+        assertFalse(registry.isLoaded());
+        assertNull(registry.authenticate("legacy"));
+        verifyNoInteractions(apiKeyRepository);
+    }
+
+    @Test
+    void onReady_whenDatabaseFails_shouldStayUnloadedUntilNextRefresh() {
+
+        when(apiKeyRepository.findByEnabledTrue())
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(List.of());
+
+        ApiKeyRegistry registry = new ApiKeyRegistry(apiKeyRepository, environment, "legacy", "default", 60);
+        registry.onReady();
+
+        assertFalse(registry.isLoaded());
+        assertNull(registry.authenticate("legacy"));
+
+        registry.refresh();
+
+        assertTrue(registry.isLoaded());
+        assertNotNull(registry.authenticate("legacy"));
+    }
+
+    private ApiKey apiKey(String key, String tenant, String scopes, String tier) {
+        ApiKey apiKey = new ApiKey();
+        apiKey.setId(UUID.randomUUID());
+        apiKey.setKeyHash(ApiKeyRegistry.sha256(key));
+        apiKey.setTenantId(tenant);
+        apiKey.setScopes(scopes);
+        apiKey.setTier(tier);
+        return apiKey;
+    }
+}
@@ -1,12 +1,24 @@
 package com.ragchat.service;
 
+import com.ragchat.api.dto.AddMessageRequest;
+import com.ragchat.api.dto.BulkMessageItem;
+import com.ragchat.api.dto.BulkMessageResult;
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.api.dto.ChatSessionResponse;
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.domain.ChatSession;
 import com.ragchat.repository.ChatSessionRepository;
 import com.ragchat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -20,32 +32,92 @@ class ChatServiceTest {
     @Mock
     private ChatMessageRepository messageRepository;
 
+    @Mock
+    private SessionCache sessionCache;
+
+    @Mock
+    private RecentMessagesBuffer recentMessages;
+
+    @Mock
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private ContextChunkStore contextChunkStore;
+
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+
+    @Mock
+    private VersionRegistry versionRegistry;
+
+    @Spy
+    private MessageStreams messageStreams = new MessageStreams(10, Duration.ofMinutes(2), new SimpleMeterRegistry());
+
+    @Mock
+    private SessionEvents sessionEvents;
+
     @InjectMocks
     private ChatService chatService;
 
     @Test
     void listSessions_shouldReturnEmptyList() {
 
-        when(sessionRepository.findByUserIdOrderByUpdatedAtDesc("Ram"))
+        when(sessionRepository.findByUserId("Ram"))
                 .thenReturn(Collections.emptyList());
 
         var result = chatService.listSessions("Ram");
 
         assertTrue(result.isEmpty());
-        verify(sessionRepository).findByUserIdOrderByUpdatedAtDesc("Ram");
+        verify(sessionRepository).findByUserId("Ram");
+    }
+
+    @Test
+    void listSessionsByCursor_favorites_shouldPageWithContinuationToken() {
+
+        OffsetDateTime now = OffsetDateTime.now();
+        ChatSessionResponse first = sessionRow(now);
+        ChatSessionResponse second = sessionRow(now.minusMinutes(1));
+
+        when(sessionRepository.findFavoritesByUserId(eq("Ram"), any()))
+                .thenReturn(List.of(first, second));
+
+        var result = chatService.listSessionsByCursor("Ram", true, null, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(first.getId(), result.getContent().get(0).getId());
+        assertEquals(first.getId(), Cursor.decode(result.getNextCursor()).id());
+        verify(sessionRepository, never()).findByUserId(any());
+    }
+
+    @Test
+    void listSessionsByCursor_withCursor_shouldResumeAfterPosition() {
+
+        OffsetDateTime now = OffsetDateTime.now();
+        Cursor position = new Cursor(now, UUID.randomUUID());
+
+        when(sessionRepository.findByUserIdAfter(eq("Ram"), any(), eq(position.id()), any()))
+                .thenReturn(Collections.emptyList());
+
+        var result = chatService.listSessionsByCursor("Ram", false, position.encode(), null);
+
+        assertTrue(result.getContent().isEmpty());
+        assertNull(result.getNextCursor());
     }
 
     @Test
-    void deleteSession_whenExists_shouldDelete() {
+    void deleteSession_whenExists_shouldOnlyTombstoneIt() {
 
         UUID id = UUID.randomUUID();
 
-        when(sessionRepository.existsById(id))
-                .thenReturn(true);
+        when(sessionRepository.markDeleted(eq(List.of(id)), any()))
+                .thenReturn(1);
 
         chatService.deleteSession(id);
 
-        verify(sessionRepository).deleteById(id);
+        verify(sessionCache).evict(id);
+        verify(recentMessages).invalidate(id);
+        verifyNoInteractions(messageRepository);
+        verify(sessionRepository, never()).deleteById(any());
     }
 
     @Test
@@ -53,13 +125,32 @@ class ChatServiceTest {
 
         UUID id = UUID.randomUUID();
 
-        when(sessionRepository.existsById(id))
-                .thenReturn(false);
+        when(sessionRepository.markDeleted(eq(List.of(id)), any()))
+                .thenReturn(0);
 
-        assertThrows(RuntimeException.class, () ->
+        assertThrows(ResourceNotFoundException.class, () ->
                 chatService.deleteSession(id));
     }
 
+    @Test
+    void deleteSessions_shouldTombstoneAllInOneStatementAndCountMissingOnes() {
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+
+        when(sessionRepository.markDeleted(eq(Set.of(first, second, missing)), any()))
+                .thenReturn(2);
+
+        var result = chatService.deleteSessions(List.of(first, second, missing, first));
+
+        assertEquals(2, result.getDeleted());
+        assertEquals(1, result.getNotFound());
+        verify(sessionRepository, times(1)).markDeleted(any(), any());
+        verify(sessionCache).evict(missing);
+        verify(recentMessages).invalidateAll(Set.of(first, second, missing));
+    }
+
     @Test
     void renameSession_whenNotFound_shouldThrow() {
 
@@ -77,10 +168,394 @@ class ChatServiceTest {
 
         UUID id = UUID.randomUUID();
 
-        when(sessionRepository.findById(id))
-                .thenReturn(Optional.empty());
+        when(sessionCache.require(id))
+                .thenThrow(new ResourceNotFoundException("Session not found"));
 
         assertThrows(RuntimeException.class, () ->
                 chatService.addMessage(id, null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void addMessage_whenSessionCached_shouldOnlyReferenceSession() {
+
+        UUID id = UUID.randomUUID();
+
+        AddMessageRequest request = new AddMessageRequest();
+        request.setUserId("Ram");
+        request.setSender("USER");
+        request.setContent("hello");
+
+        cached(id);
+        when(sessionRepository.getReferenceById(id))
+                .thenReturn(reference(id));
+        when(messageRepository.save(any(ChatMessage.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        var result = chatService.addMessage(id, request);
+
+        assertEquals("hello", result.getContent());
+        verify(recentMessages).append(any(), eq(result));
+        verify(sessionCache).require(id);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository).recordMessages(id, 1, result.getCreatedAt(), "USER", "hello");
+        verify(replicaLagGuard).recordWrite("Ram", id);
+    }
+
+    @Test
+    void enqueueMessage_shouldAssignIdAndSubmitToQueue() {
+
+        UUID id = UUID.randomUUID();
+
+        AddMessageRequest request = new AddMessageRequest();
+        request.setSender("USER");
+        request.setContent("hello");
+
+        cached(id);
+        when(writeBehindQueue.submit(any()))
+                .thenReturn(true);
+
+        var result = chatService.enqueueMessage(id, request);
+
+        assertNotNull(result.getId());
+        // Stamped by the writer at flush
+        assertNull(result.getCreatedAt());
+        verify(sessionCache).require(id);
+        verify(writeBehindQueue).submit(argThat(pending ->
+                pending.id().equals(result.getId()) && pending.sessionId().equals(id)));
+        verify(messageRepository, never()).save(any());
+        // Announced by the queue after its batch commits
+        verifyNoInteractions(sessionEvents);
+    }
+
+    @Test
+    void enqueueMessage_whenQueueFull_shouldThrow() {
+
+        UUID id = UUID.randomUUID();
+
+        AddMessageRequest request = new AddMessageRequest();
+        request.setSender("USER");
+        request.setContent("hello");
+
+        cached(id);
+        when(writeBehindQueue.submit(any()))
+                .thenReturn(false);
+
+        assertThrows(WriteQueueFullException.class, () ->
+                chatService.enqueueMessage(id, request));
+    }
+
+    @Test
+    void renameSession_shouldEvictCachedMetadata() {
+
+        UUID id = UUID.randomUUID();
+        ChatSession session = session(OffsetDateTime.now());
+        session.setId(id);
+
+        when(sessionRepository.findById(id))
+                .thenReturn(Optional.of(session));
+
+        chatService.renameSession(id, "Renamed");
+
+        verify(sessionCache).evict(id);
+    }
+
+    @Test
+    void getMessagesByCursor_shouldReturnNextCursorWhenMoreRowsExist() {
+
+        UUID id = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now();
+
+        cached(id);
+        when(messageRepository.findOldest(eq(id), any(), any()))
+                .thenReturn(List.of(message(now), message(now.plusSeconds(1)), message(now.plusSeconds(2))));
+
+        var result = chatService.getMessagesByCursor(id, "", null, 2, false);
+
+        assertEquals(2, result.getContent().size());
+        assertNotNull(result.getNextCursor());
+        assertNull(result.getPreviousCursor());
+
+        Cursor next = Cursor.decode(result.getNextCursor());
+        assertEquals(result.getContent().get(1).getId(), next.id());
+        assertEquals(now.plusSeconds(1).toInstant().truncatedTo(ChronoUnit.MICROS), next.timestamp().toInstant());
+    }
+
+    @Test
+    void cursor_shouldKeepTimestampToTheMicrosecond() {
+
+        OffsetDateTime timestamp = OffsetDateTime.parse("2024-05-01T10:15:30.123456789Z");
+        UUID id = UUID.randomUUID();
+
+        Cursor decoded = Cursor.decode(new Cursor(timestamp, id).encode());
+
+        assertEquals(OffsetDateTime.parse("2024-05-01T10:15:30.123456Z"), decoded.timestamp());
+        assertEquals(id, decoded.id());
+    }
+
+    @Test
+    void getMessagesByCursor_before_shouldReturnChronologicalOrder() {
+
+        UUID id = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now();
+        ChatMessageResponse newest = message(now.plusSeconds(2));
+        ChatMessageResponse older = message(now.plusSeconds(1));
+
+        cached(id);
+        when(messageRepository.findNewest(eq(id), any(), any()))
+                .thenReturn(List.of(newest, older));
+
+        var result = chatService.getMessagesByCursor(id, null, "", 20, false);
+
+        assertEquals(older.getId(), result.getContent().get(0).getId());
+        assertEquals(newest.getId(), result.getContent().get(1).getId());
+        assertNull(result.getPreviousCursor());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getMessagesByCursor_withContext_shouldAttachContextsForThePage() {
+
+        UUID id = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now();
+        ChatMessageResponse first = message(now);
+        ChatMessageResponse second = message(now.plusSeconds(1));
+
+        cached(id);
+        when(messageRepository.findOldest(eq(id), any(), any()))
+                .thenReturn(List.of(first, second));
+
+        var result = chatService.getMessagesByCursor(id, "", null, 20, true);
+
+        verify(contextChunkStore, times(1)).attachContexts(result.getContent());
+        assertEquals(2, result.getContent().size());
+    }
+
+    @Test
+    void getMessagesByCursor_withoutContext_shouldNotReadContexts() {
+
+        UUID id = UUID.randomUUID();
+
+        cached(id);
+        when(messageRepository.findOldest(eq(id), any(), any()))
+                .thenReturn(List.of(message(OffsetDateTime.now())));
+
+        var result = chatService.getMessagesByCursor(id, "", null, 20, false);
+
+        assertNull(result.getContent().get(0).getContext());
+        verify(contextChunkStore, never()).attachContexts(any());
+    }
+
+    @Test
+    void addMessage_whenSessionDeletedElsewhere_shouldThrow() {
+
+        UUID id = UUID.randomUUID();
+
+        AddMessageRequest request = new AddMessageRequest();
+        request.setSender("USER");
+        request.setContent("hello");
+
+        // Still cached as live, but tombstoned by another instance
+        cached(id);
+        when(sessionRepository.getReferenceById(id))
+                .thenReturn(reference(id));
+        when(messageRepository.save(any(ChatMessage.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.recordMessages(eq(id), eq(1), any(), any(), any()))
+                .thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> chatService.addMessage(id, request));
+        verify(recentMessages, never()).append(any(), any());
+    }
+
+    @Test
+    void addMessage_withContext_shouldStoreItThroughTheChunkStore() {
+
+        UUID id = UUID.randomUUID();
+        byte[] recipe = {1};
+        byte[] chunks = new byte[32];
+
+        AddMessageRequest request = new AddMessageRequest();
+        request.setUserId("Ram");
+        request.setSender("ASSISTANT");
+        request.setContent("answer");
+        request.setContext("{\"docs\":[1]}");
+
+        cached(id);
+        when(sessionRepository.getReferenceById(id))
+                .thenReturn(reference(id));
+        when(contextChunkStore.write("{\"docs\":[1]}"))
+                .thenReturn(new ContextChunkStore.StoredContext(recipe, chunks));
+        when(messageRepository.save(any(ChatMessage.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        var result = chatService.addMessage(id, request);
+
+        assertEquals("{\"docs\":[1]}", result.getContext());
+        verify(messageRepository).save(argThat(message ->
+                message.getContextRecipe() == recipe && message.getContextChunks() == chunks));
+    }
+
+    @Test
+    void getMessagesByCursor_withMalformedCursor_shouldThrow() {
+
+        UUID id = UUID.randomUUID();
+
+        cached(id);
+
+        assertThrows(InvalidRequestException.class, () ->
+                chatService.getMessagesByCursor(id, "not-a-cursor", null, 20, false));
+    }
+
+    @Test
+    void addMessages_shouldCheckEachSessionOnceAndReportMissingOnes() {
+
+        UUID known = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+
+        when(sessionRepository.findExistingIds(Set.of(known, missing)))
+                .thenReturn(List.of(known));
+        when(sessionRepository.getReferenceById(known))
+                .thenReturn(reference(known));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        var result = chatService.addMessages(List.of(
+                bulkItem(known, "first"),
+                bulkItem(missing, "lost"),
+                bulkItem(known, "second")));
+
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getFailed());
+        assertEquals(BulkMessageResult.CREATED, result.getResults().get(0).getStatus());
+        assertEquals(BulkMessageResult.SESSION_NOT_FOUND, result.getResults().get(1).getStatus());
+        assertEquals(2, result.getResults().get(2).getIndex());
+        verify(sessionRepository, times(1)).findExistingIds(any());
+        verify(sessionRepository, never()).findById(any());
+        verify(messageRepository).saveAll(argThat(messages -> ((List<ChatMessage>) messages).size() == 2));
+        // One activity update per session, carrying the last message appended to it
+        verify(sessionRepository).recordMessages(eq(known), eq(2), any(), eq("USER"), eq("second"));
+        verify(sessionRepository, never()).recordMessages(eq(missing), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void preview_shouldTruncateLongMessagesWithoutSplittingSurrogatePairs() {
+
+        String emoji = "\uD83D\uDE00";
+        String content = "a".repeat(ChatService.PREVIEW_LENGTH - 1) + emoji + "tail";
+
+        assertEquals("short", ChatService.preview("short"));
+        assertEquals("a".repeat(ChatService.PREVIEW_LENGTH - 1), ChatService.preview(content));
+        assertEquals(ChatService.PREVIEW_LENGTH, ChatService.preview("b".repeat(500)).length());
+    }
+
+    @Test
+    void getRecentMessages_shouldClampToBufferCapacity() {
+
+        UUID id = UUID.randomUUID();
+
+        when(recentMessages.capacity())
+                .thenReturn(50);
+        SessionMetadata session = cached(id);
+        OffsetDateTime since = session.createdAt().minus(ChatService.CLOCK_SKEW_SLACK);
+        when(recentMessages.tail(id, since, 50))
+                .thenReturn(Collections.emptyList());
+
+        chatService.getRecentMessages(id, 500);
+
+        verify(recentMessages).tail(id, since, 50);
+    }
+
+    @Test
+    void completeMessageStream_shouldStoreCoalescedDeltasAsOneMessage() {
+
+        UUID id = UUID.randomUUID();
+        cached(id);
+        when(sessionRepository.getReferenceById(id))
+                .thenReturn(reference(id));
+        when(messageRepository.save(any(ChatMessage.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        var opened = chatService.openMessageStream(id);
+        chatService.appendToMessageStream(id, opened.getId(), "Hel");
+        chatService.appendToMessageStream(id, opened.getId(), "lo");
+        var result = chatService.completeMessageStream(id, opened.getId(), null);
+
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(messageRepository, times(1)).save(saved.capture());
+        assertEquals(opened.getId(), saved.getValue().getId());
+        assertEquals("ASSISTANT", saved.getValue().getSender());
+        assertEquals("Hello", saved.getValue().getContent());
+        assertEquals("Hello", result.getContent());
+        verify(sessionEvents, times(2)).publish(eq(id), eq(SessionEvents.STREAM_DELTA), any());
+        verify(sessionEvents).publishAfterCommit(eq(id), eq(SessionEvents.STREAM_COMPLETED), any());
+        verify(sessionRepository).recordMessages(eq(id), eq(1), any(), eq("ASSISTANT"), eq("Hello"));
+        assertTrue(messageStreams.openIn(id).isEmpty());
+    }
+
+    @Test
+    void subscribeToEvents_shouldReplayOpenStreams() {
+
+        UUID id = UUID.randomUUID();
+        cached(id);
+        var opened = chatService.openMessageStream(id);
+        chatService.appendToMessageStream(id, opened.getId(), "partial");
+
+        chatService.subscribeToEvents(id, event -> { }, () -> { });
+
+        ArgumentCaptor<Supplier<List<SessionEvents.Event>>> replay = ArgumentCaptor.forClass(Supplier.class);
+        verify(sessionEvents).subscribe(eq(id), any(), any(), replay.capture());
+        List<SessionEvents.Event> received = replay.getValue().get();
+        assertEquals(1, received.size());
+        assertEquals(SessionEvents.STREAM_STARTED, received.get(0).type());
+        MessageStreams.Snapshot snapshot = (MessageStreams.Snapshot) received.get(0).data();
+        assertEquals("partial", snapshot.content());
+        assertEquals(1, snapshot.seq());
+    }
+
+    private SessionMetadata cached(UUID id) {
+        SessionMetadata session = new SessionMetadata(id, "Ram", "Title", false,
+                OffsetDateTime.now().minusMonths(2), OffsetDateTime.now());
+        when(sessionCache.require(id))
+                .thenReturn(session);
+        return session;
+    }
+
+    private static BulkMessageItem bulkItem(UUID sessionId, String content) {
+        BulkMessageItem item = new BulkMessageItem();
+        item.setSessionId(sessionId);
+        item.setSender("USER");
+        item.setContent(content);
+        return item;
+    }
+
+    private static ChatMessageResponse message(OffsetDateTime createdAt) {
+        return new ChatMessageResponse(UUID.randomUUID(), "USER", "hello", createdAt);
+    }
+
+    private static ChatSession reference(UUID id) {
+        ChatSession session = new ChatSession();
+        session.setId(id);
+        return session;
+    }
+
+    private static ChatSession session(OffsetDateTime updatedAt) {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("Ram");
+        session.setTitle("title");
+        session.setFavorite(true);
+        session.setUpdatedAt(updatedAt);
+        return session;
+    }
+
+    private static ChatSessionResponse sessionRow(OffsetDateTime updatedAt) {
+        return new ChatSessionResponse(UUID.randomUUID(), "Ram", "title", true, updatedAt, updatedAt,
+                null, 0, null, null);
+    }
+}
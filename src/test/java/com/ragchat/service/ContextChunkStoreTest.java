@@ -0,0 +1,165 @@
+package com.ragchat.service;
+
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.ContextDictionaryRepository;
+import com.ragchat.repository.MessageContextView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class ContextChunkStoreTest {
+
+    @Mock
+    private ContextChunkRepository chunkRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ContextDictionaryRepository dictionaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ContextCodec codec;
+    private ContextChunkStore store;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        codec = new ContextCodec(dictionaryRepository, 3, 16, transactionManager, meterRegistry);
+        store = new ContextChunkStore(chunkRepository, messageRepository, codec, 1000, 16,
+                Duration.ofDays(1), Duration.ofDays(7), meterRegistry);
+    }
+
+    @Test
+    void write_sameContextTwice_shouldOnlyStoreChunksOnce() {
+
+        String context = context(passage(1));
+
+        ContextChunkStore.StoredContext first = store.write(context);
+        ContextChunkStore.StoredContext second = store.write(context);
+
+        verify(chunkRepository, times(1)).findLastUsed(any());
+        verify(chunkRepository, times(1)).upsert(argThat(chunks -> chunks.size() == 1));
+        assertArrayEquals(first.chunks(), second.chunks());
+        assertEquals(ContextRecipe.HASH_BYTES, first.chunks().length);
+    }
+
+    @Test
+    void write_chunkAlreadyStoredAndRecentlyUsed_shouldNotWriteIt() {
+
+        String passage = passage(2);
+        byte[] hash = ContextRecipe.sha256(passage.getBytes(StandardCharsets.UTF_8));
+
+        when(chunkRepository.findLastUsed(any()))
+                .thenReturn(Map.of(ByteBuffer.wrap(hash), Instant.now().minusSeconds(60)));
+
+        store.write(context(passage));
+
+        verify(chunkRepository, never()).upsert(any());
+    }
+
+    @Test
+    void write_chunkNotUsedForLong_shouldMarkItUsedAgain() {
+
+        String passage = passage(3);
+        byte[] hash = ContextRecipe.sha256(passage.getBytes(StandardCharsets.UTF_8));
+
+        when(chunkRepository.findLastUsed(any()))
+                .thenReturn(Map.of(ByteBuffer.wrap(hash), Instant.now().minus(Duration.ofDays(3))));
+
+        store.write(context(passage));
+
+        verify(chunkRepository).upsert(argThat(chunks -> chunks.size() == 1));
+    }
+
+    @Test
+    void attachContexts_shouldReassembleThroughTheCacheAndReadOlderColumns() {
+
+        String context = context(passage(4));
+        ContextChunkStore.StoredContext stored = store.write(context);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ContextChunkRepository.NewChunk>> written = ArgumentCaptor.forClass(List.class);
+        verify(chunkRepository).upsert(written.capture());
+        ContextChunkRepository.NewChunk chunk = written.getValue().get(0);
+
+        ChatMessageResponse chunked = response();
+        ChatMessageResponse compressed = response();
+        ChatMessageResponse legacy = response();
+        List<MessageContextView> rows = List.of(
+                view(chunked.getId(), stored.recipe(), stored.chunks(), null, null),
+                view(compressed.getId(), null, null, "{\"docs\":[1]}", null),
+                view(legacy.getId(), null, null, null, "{\"docs\":[2]}"));
+
+        when(messageRepository.findContexts(any(), any(), any()))
+                .thenReturn(rows, List.of(rows.get(0)));
+        when(chunkRepository.findData(any()))
+                .thenReturn(Map.of(ByteBuffer.wrap(chunk.hash()), chunk.data()));
+
+        store.attachContexts(List.of(chunked, compressed, legacy));
+        ChatMessageResponse again = response();
+        again.setId(chunked.getId());
+        again.setCreatedAt(chunked.getCreatedAt());
+        store.attachContexts(List.of(again));
+
+        assertEquals(context, chunked.getContext());
+        assertEquals("{\"docs\":[1]}", compressed.getContext());
+        assertEquals("{\"docs\":[2]}", legacy.getContext());
+        assertEquals(context, again.getContext());
+        // The second read is served from the hot-chunk cache
+        verify(chunkRepository, times(1)).findData(any());
+    }
+
+    private static MessageContextView view(UUID id, byte[] recipe, byte[] chunks,
+                                           String compressedContext, String legacyContext) {
+        MessageContextView view = mock(MessageContextView.class);
+        when(view.getId()).thenReturn(id);
+        when(view.getContextRecipe()).thenReturn(recipe);
+        lenient().when(view.getContextChunks()).thenReturn(chunks);
+        lenient().when(view.getCompressedContext()).thenReturn(compressedContext);
+        lenient().when(view.getLegacyContext()).thenReturn(legacyContext);
+        return view;
+    }
+
+    private static ChatMessageResponse response() {
+        ChatMessageResponse response = new ChatMessageResponse();
+        response.setId(UUID.randomUUID());
+        response.setCreatedAt(OffsetDateTime.now());
+        return response;
+    }
+
+    private static String context(String passage) {
+        return "{\"query\":\"q\",\"documents\":[{\"id\":1,\"score\":0.8,\"text\":\"" + passage + "\"}]}";
+    }
+
+    private static String passage(int seed) {
+        StringBuilder passage = new StringBuilder("Passage " + seed + ":");
+        Random random = new Random(seed);
+        while (passage.length() < 600) {
+            passage.append(" term").append(random.nextInt(1000));
+        }
+        return passage.toString();
+    }
+}
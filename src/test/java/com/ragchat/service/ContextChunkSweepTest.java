@@ -0,0 +1,193 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ContextChunkRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Sweeps context_chunks and maintains context_chunk_refs as db/context-compression.sql creates
+// them, against PostgreSQL 16
+class ContextChunkSweepTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final Duration GRACE = Duration.ofDays(7);
+
+    private static EmbeddedPostgres postgres;
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ContextChunkRepository chunkRepository;
+    private Instant now;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        String database = "sweep_" + DATABASES.incrementAndGet();
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database " + database);
+        dataSource = postgres.getDatabase("postgres", database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        chunkRepository = new ContextChunkRepository(jdbcTemplate);
+        now = Instant.now();
+
+        jdbcTemplate.execute("""
+                create table chat_messages (
+                    id uuid not null primary key,
+                    context text,
+                    context_zstd bytea,
+                    context_recipe bytea,
+                    context_chunks bytea,
+                    created_at timestamp(6) with time zone not null
+                )
+                """);
+        runScript();
+    }
+
+    @Test
+    void sweep_shouldDeleteOnlyStaleChunksNoMessageReferences() {
+        chunk(1, now.minus(Duration.ofDays(10)));
+        byte[] referenced = chunk(2, now.minus(Duration.ofDays(10)));
+        byte[] fresh = chunk(3, now.minus(Duration.ofDays(1)));
+        chunk(4, now.minus(Duration.ofDays(1)));
+        reference(now.minus(Duration.ofDays(40)), referenced, fresh);
+
+        assertEquals(1, chunkRepository.sweep(now.minus(GRACE)));
+
+        assertEquals(Set.of(2, 3, 4), remaining());
+    }
+
+    @Test
+    void sweep_whenReferencesWereRemoved_shouldDeleteTheChunk() {
+        byte[] hash = chunk(1, now.minus(Duration.ofDays(30)));
+        reference(now.minus(Duration.ofDays(400)), hash);
+
+        assertEquals(1, chunkRepository.deleteReferencesBefore(now.minus(Duration.ofDays(365)), 100));
+        assertEquals(1, chunkRepository.sweep(now.minus(GRACE)));
+
+        assertEquals(Set.of(), remaining());
+    }
+
+    @Test
+    void sweep_whenNoChunkIsStale_shouldDeleteNothing() {
+        chunk(1, now.minus(Duration.ofDays(1)));
+
+        assertEquals(0, chunkRepository.sweep(now.minus(GRACE)));
+
+        assertEquals(Set.of(1), remaining());
+    }
+
+    @Test
+    void deleteReferencesBefore_shouldStopAtTheLimitAndKeepNewerReferences() {
+        Instant bound = now.minus(Duration.ofDays(365));
+        reference(bound.minus(Duration.ofDays(2)), hash(1), hash(2));
+        reference(bound.minus(Duration.ofDays(1)), hash(3));
+        reference(bound.plusSeconds(1), hash(4));
+
+        assertEquals(2, chunkRepository.deleteReferencesBefore(bound, 2));
+        assertEquals(1, chunkRepository.deleteReferencesBefore(bound, 2));
+        assertEquals(0, chunkRepository.deleteReferencesBefore(bound, 2));
+
+        assertEquals(1, referenceCount());
+    }
+
+    @Test
+    void addReferences_shouldIgnoreReferencesThatExist() {
+        UUID messageId = UUID.randomUUID();
+        List<ContextChunkRepository.Reference> references =
+                ContextChunkStore.references(messageId, now, concat(hash(1), hash(2), hash(1)));
+
+        chunkRepository.addReferences(references);
+        chunkRepository.addReferences(references);
+
+        assertEquals(2, referenceCount());
+    }
+
+    @Test
+    void script_shouldBackfillReferencesOfChunkedMessagesOnce() {
+        jdbcTemplate.execute("drop table context_chunk_refs");
+        chunk(1, now);
+        UUID messageId = UUID.randomUUID();
+        jdbcTemplate.update("insert into chat_messages (id, context_chunks, created_at) values (?, ?, ?)",
+                messageId, concat(hash(1), hash(2), hash(1)), Timestamp.from(now));
+        jdbcTemplate.update("insert into chat_messages (id, context, created_at) values (?, ?, ?)",
+                UUID.randomUUID(), "whole context", Timestamp.from(now));
+
+        runScript();
+        assertEquals(2, referenceCount());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "select count(*) from context_chunk_refs where message_id = ?", Integer.class, messageId));
+
+        // Later starts leave the table to the writers
+        jdbcTemplate.update("delete from context_chunk_refs where chunk_hash = ?", (Object) hash(2));
+        runScript();
+        assertEquals(1, referenceCount());
+    }
+
+    private void runScript() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/context-compression.sql")).execute(dataSource);
+    }
+
+    // 32 copies of the id
+    private static byte[] hash(int id) {
+        byte[] hash = new byte[32];
+        Arrays.fill(hash, (byte) id);
+        return hash;
+    }
+
+    private static byte[] concat(byte[]... hashes) {
+        byte[] chunks = new byte[hashes.length * 32];
+        for (int i = 0; i < hashes.length; i++) {
+            System.arraycopy(hashes[i], 0, chunks, i * 32, 32);
+        }
+        return chunks;
+    }
+
+    // A chunk identified by raw_length
+    private byte[] chunk(int id, Instant lastUsedAt) {
+        byte[] hash = hash(id);
+        jdbcTemplate.update("insert into context_chunks (hash, data, raw_length, last_used_at) values (?, ?, ?, ?)",
+                hash, new byte[]{(byte) id}, id, Timestamp.from(lastUsedAt));
+        return hash;
+    }
+
+    // References of a new message, as its writer records them
+    private void reference(Instant createdAt, byte[]... hashes) {
+        chunkRepository.addReferences(ContextChunkStore.references(UUID.randomUUID(), createdAt, concat(hashes)));
+    }
+
+    private int referenceCount() {
+        return jdbcTemplate.queryForObject("select count(*) from context_chunk_refs", Integer.class);
+    }
+
+    private Set<Integer> remaining() {
+        List<Integer> ids = jdbcTemplate.queryForList("select raw_length from context_chunks", Integer.class);
+        return new HashSet<>(ids);
+    }
+}
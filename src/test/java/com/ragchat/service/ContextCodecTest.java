@@ -0,0 +1,121 @@
+package com.ragchat.service;
+
+import com.github.luben.zstd.Zstd;
+import com.ragchat.domain.ContextDictionary;
+import com.ragchat.repository.ContextDictionaryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class ContextCodecTest {
+
+    @Mock
+    private ContextDictionaryRepository dictionaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void compress_withoutDictionary_shouldRoundTrip() {
+
+        ContextCodec codec = codec();
+        String context = sample(7);
+
+        byte[] frame = codec.compress(context);
+
+        assertEquals(0, Zstd.getDictIdFromFrame(frame));
+        assertTrue(frame.length < context.length());
+        assertEquals(context, codec.decompress(frame));
+        assertNull(codec.compress(null));
+        assertNull(codec.decompress(null));
+    }
+
+    @Test
+    void train_shouldCompressNewValuesWithTheDictionary() {
+
+        List<ContextDictionary> stored = new ArrayList<>();
+        when(dictionaryRepository.findAllByOrderByCreatedAtAsc())
+                .thenAnswer(invocation -> List.copyOf(stored));
+        when(dictionaryRepository.save(any()))
+                .thenAnswer(invocation -> {
+                    stored.add(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+
+        ContextCodec codec = codec();
+        String context = sample(1000);
+        byte[] plain = codec.compress(context);
+
+        ContextDictionary dictionary = codec.train(samples());
+
+        assertNotNull(dictionary);
+        assertTrue(codec.hasDictionary());
+        byte[] withDictionary = codec.compress(context);
+        assertEquals(dictionary.getId(), Zstd.getDictIdFromFrame(withDictionary));
+        assertTrue(withDictionary.length < plain.length);
+        assertEquals(context, codec.decompress(withDictionary));
+        // Values written before the dictionary existed stay readable
+        assertEquals(context, codec.decompress(plain));
+    }
+
+    @Test
+    void decompress_withDictionaryTrainedElsewhere_shouldReloadDictionaries() {
+
+        List<ContextDictionary> stored = new ArrayList<>();
+        when(dictionaryRepository.findAllByOrderByCreatedAtAsc())
+                .thenAnswer(invocation -> List.copyOf(stored));
+        when(dictionaryRepository.save(any()))
+                .thenAnswer(invocation -> {
+                    stored.add(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+
+        ContextCodec writer = codec();
+        ContextCodec reader = codec();
+        assertFalse(reader.hasDictionary());
+
+        writer.train(samples());
+        String context = sample(2000);
+
+        assertEquals(context, reader.decompress(writer.compress(context)));
+        assertTrue(reader.hasDictionary());
+    }
+
+    private ContextCodec codec() {
+        return new ContextCodec(dictionaryRepository, 3, 16, transactionManager, new SimpleMeterRegistry());
+    }
+
+    private static List<byte[]> samples() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            samples.add(sample(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return samples;
+    }
+
+    // Shaped like the retrieved-document JSON stored as context
+    private static String sample(int seed) {
+        StringBuilder json = new StringBuilder("{\"query\":\"question ").append(seed).append("\",\"documents\":[");
+        for (int doc = 0; doc < 4; doc++) {
+            int id = seed * 7 + doc;
+            json.append(doc > 0 ? "," : "")
+                    .append("{\"id\":\"doc-").append(id)
+                    .append("\",\"source\":\"confluence://engineering/runbooks/").append(id % 13)
+                    .append("\",\"score\":0.").append(90 - doc * 7 - seed % 5)
+                    .append(",\"chunk\":\"Retrieval augmented generation combines a retriever with a generator. ")
+                    .append("Section ").append(id % 31).append(" explains how embeddings of size ")
+                    .append(256 << (id % 3)).append(" are indexed for approximate nearest neighbour search.\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ragchat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextRecipeTest {
+
+    @Test
+    void split_json_shouldChunkPassagesAndKeepTheRestLiteral() {
+
+        String passage = passage(1);
+        String json = "{\"query\":\"q\",\"documents\":[{\"id\":7,\"score\":0.93,\"text\":\"" + passage + "\"}]}";
+
+        ContextRecipe recipe = ContextRecipe.split(bytes(json));
+
+        List<ContextRecipe.Part> chunks = recipe.parts().stream().filter(ContextRecipe.Part::isChunk).toList();
+        assertEquals(1, chunks.size());
+        assertEquals(passage, new String(chunks.get(0).chunk(), StandardCharsets.UTF_8));
+        assertEquals(json, reassemble(recipe));
+    }
+
+    @Test
+    void split_samePassageInDifferentContexts_shouldProduceTheSameChunk() {
+
+        String passage = passage(2);
+        ContextRecipe first = ContextRecipe.split(bytes(
+                "{\"documents\":[{\"id\":1,\"text\":\"" + passage + "\"}]}"));
+        ContextRecipe second = ContextRecipe.split(bytes(
+                "{\"query\":\"other\",\"documents\":[{\"id\":9,\"score\":0.5,\"text\":\"" + passage + "\"}]}"));
+
+        assertArrayEquals(chunkHash(first), chunkHash(second));
+    }
+
+    @Test
+    void encodeDecode_shouldRoundTripEscapesAndUnicodeExactly() {
+
+        String json = "{ \"documents\" : [ {\"text\": \"" + passage(3)
+                + " caf\\u00e9 \\\"quoted\\\" \\n na\u00efve \u65e5\u672c\u8a9e \\\\ end\"} ],\n  \"k\": null }";
+        ContextRecipe recipe = ContextRecipe.split(bytes(json));
+
+        ContextRecipe decoded = ContextRecipe.decode(recipe.encode(), recipe.chunkHashes());
+
+        assertEquals(recipe.parts().size(), decoded.parts().size());
+        assertTrue(new String(recipe.parts().get(1).chunk(), StandardCharsets.UTF_8).endsWith("\\\\ end"));
+        assertEquals(json, reassemble(recipe));
+        assertArrayEquals(recipe.chunkHashes(), decoded.chunkHashes());
+    }
+
+    @Test
+    void split_plainTextOrInvalidJson_shouldUseContentDefinedChunks() {
+
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(42);
+        while (text.length() < 200_000) {
+            text.append("word").append(random.nextInt(10_000)).append(' ');
+        }
+
+        for (String context : List.of(text.toString(), "{\"broken\": " + text)) {
+            ContextRecipe recipe = ContextRecipe.split(bytes(context));
+
+            assertTrue(recipe.parts().stream().filter(ContextRecipe.Part::isChunk).count() > 1);
+            assertTrue(recipe.parts().stream().allMatch(ContextRecipe.Part::isChunk));
+            assertEquals(context, reassemble(recipe));
+        }
+    }
+
+    @Test
+    void split_shortContext_shouldStayLiteral() {
+
+        ContextRecipe recipe = ContextRecipe.split(bytes("{\"docs\":[1]}"));
+
+        assertEquals(1, recipe.parts().size());
+        assertFalse(recipe.parts().get(0).isChunk());
+        assertEquals(0, recipe.chunkHashes().length);
+    }
+
+    private static String reassemble(ContextRecipe recipe) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ContextRecipe.Part part : recipe.parts()) {
+            out.writeBytes(part.isChunk() ? part.chunk() : part.literal());
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] chunkHash(ContextRecipe recipe) {
+        return recipe.parts().stream().filter(ContextRecipe.Part::isChunk).findFirst().orElseThrow().hash();
+    }
+
+    private static String passage(int seed) {
+        StringBuilder passage = new StringBuilder("Passage " + seed + ":");
+        Random random = new Random(seed);
+        while (passage.length() < 600) {
+            passage.append(" term").append(random.nextInt(1000));
+        }
+        return passage.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
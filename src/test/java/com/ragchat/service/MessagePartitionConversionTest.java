@@ -0,0 +1,152 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.MessagePartitionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Converts a table shaped like the one Hibernate and db/*.sql create, against PostgreSQL 16
+class MessagePartitionConversionTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private static EmbeddedPostgres postgres;
+
+    private JdbcTemplate jdbcTemplate;
+    private MessagePartitionRepository partitionRepository;
+    private MessagePartitionConversion conversion;
+    private UUID sessionId;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        String database = "conversion_" + DATABASES.incrementAndGet();
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database " + database);
+        DataSource dataSource = postgres.getDatabase("postgres", database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        partitionRepository = new MessagePartitionRepository(jdbcTemplate);
+        MessagePartitionMaintenance maintenance = new MessagePartitionMaintenance(partitionRepository,
+                new ContextChunkRepository(jdbcTemplate), transactionManager, 3, 0,
+                MessagePartitionMaintenance.RetentionMode.DROP, "", "5s", new SimpleMeterRegistry());
+        conversion = new MessagePartitionConversion(partitionRepository, maintenance, jdbcTemplate,
+                transactionManager, true, "5s");
+
+        jdbcTemplate.execute("""
+                create table chat_sessions (id uuid primary key, created_at timestamptz not null);
+                create table chat_messages (
+                    id uuid not null primary key,
+                    session_id uuid not null constraint fk3cpkdtwdxndrjhrx3gt9q5ux9 references chat_sessions,
+                    sender varchar(255) not null,
+                    content varchar(4000) not null,
+                    context text,
+                    created_at timestamp(6) with time zone not null,
+                    content_tsv tsvector generated always as (to_tsvector('english', content)) stored
+                );
+                create index idx_chat_messages_session_created_id on chat_messages (session_id, created_at, id);
+                create index idx_chat_messages_content_tsv on chat_messages using gin (content_tsv);
+                create index idx_chat_messages_unchunked_context on chat_messages (id) where context is not null;
+                """);
+        sessionId = UUID.randomUUID();
+        jdbcTemplate.update("insert into chat_sessions values (?, now())", sessionId);
+    }
+
+    @Test
+    void convert_shouldAttachExistingRowsWithoutRebuildingTheirIndexes() {
+
+        for (int month = 0; month < 6; month++) {
+            insertMessages(OffsetDateTime.now(ZoneOffset.UTC).minusMonths(month), 50);
+        }
+
+        assertTrue(conversion.convert());
+
+        assertTrue(partitionRepository.isPartitioned());
+        List<MessagePartitionRepository.Partition> partitions = partitionRepository.findPartitions();
+        assertEquals(MessagePartitionConversion.LEGACY_PARTITION, partitions.get(0).name());
+        assertEquals(MessagePartitionRepository.start(YearMonth.now(ZoneOffset.UTC).plusMonths(2)),
+                partitions.get(0).upperBound());
+        // Premade months follow the legacy range
+        assertEquals(MessagePartitionRepository.start(YearMonth.now(ZoneOffset.UTC).plusMonths(4)),
+                partitions.get(partitions.size() - 1).upperBound());
+        assertEquals(300, count("select count(*) from chat_messages"));
+
+        // The primary key, the three indexes and nothing else, all attached to the parent's
+        assertEquals(4, count("select count(*) from pg_index where indrelid = 'chat_messages_legacy'::regclass"));
+        assertEquals(4, count("""
+                select count(*) from pg_inherits i join pg_index x on x.indexrelid = i.inhrelid
+                where x.indrelid = 'chat_messages_legacy'::regclass
+                """));
+        assertEquals(0, count("select count(*) from pg_constraint where conname = '"
+                + MessagePartitionRepository.BOUND_CHECK + "'"));
+        assertEquals(1, count("select count(*) from pg_constraint where conrelid = 'chat_messages_legacy'::regclass"
+                + " and contype = 'f' and conparentid <> 0"));
+
+        insertMessages(OffsetDateTime.now(ZoneOffset.UTC).plusMonths(3), 1);
+        assertEquals(1, count("select count(*) from " + MessagePartitionRepository.monthName(
+                YearMonth.now(ZoneOffset.UTC).plusMonths(3))));
+    }
+
+    @Test
+    void convert_whenRowsFallBeyondTheBound_shouldLeaveTableAsItWasWithoutTheCheck() {
+
+        insertMessages(OffsetDateTime.now(ZoneOffset.UTC), 10);
+        insertMessages(OffsetDateTime.now(ZoneOffset.UTC).plusMonths(6), 1);
+
+        assertThrows(RuntimeException.class, () -> conversion.convert());
+
+        assertFalse(partitionRepository.isPartitioned());
+        assertFalse(partitionRepository.hasBoundCheck());
+        assertEquals(11, count("select count(*) from chat_messages"));
+        // A later message is still accepted
+        insertMessages(OffsetDateTime.now(ZoneOffset.UTC).plusYears(1), 1);
+    }
+
+    @Test
+    void convert_whenAlreadyPartitioned_shouldDoNothing() {
+
+        insertMessages(OffsetDateTime.now(ZoneOffset.UTC), 10);
+        conversion.convert();
+        List<MessagePartitionRepository.Partition> partitions = partitionRepository.findPartitions();
+
+        assertTrue(conversion.convert());
+
+        assertEquals(partitions, partitionRepository.findPartitions());
+    }
+
+    private void insertMessages(OffsetDateTime createdAt, int count) {
+        for (int i = 0; i < count; i++) {
+            jdbcTemplate.update("insert into chat_messages (id, session_id, sender, content, created_at)"
+                    + " values (?, ?, 'USER', 'hello', ?)", UUID.randomUUID(), sessionId, createdAt);
+        }
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
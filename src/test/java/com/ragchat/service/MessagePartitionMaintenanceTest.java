@@ -0,0 +1,130 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ContextChunkRepository;
+import com.ragchat.repository.MessagePartitionRepository;
+import com.ragchat.repository.MessagePartitionRepository.Partition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class MessagePartitionMaintenanceTest {
+
+    private static final YearMonth NOW = YearMonth.of(2026, 10);
+
+    @Mock
+    private MessagePartitionRepository partitionRepository;
+
+    @Mock
+    private ContextChunkRepository chunkRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void createFuturePartitions_afterConversion_shouldContinueAfterTheLegacyPartition() {
+
+        when(partitionRepository.findPartitions())
+                .thenReturn(List.of(partition("chat_messages_legacy", NOW.plusMonths(1))));
+
+        maintenance(0, MessagePartitionMaintenance.RetentionMode.DROP).createFuturePartitions(NOW);
+
+        InOrder inOrder = inOrder(partitionRepository);
+        inOrder.verify(partitionRepository).createMonth(YearMonth.of(2026, 11));
+        inOrder.verify(partitionRepository).createMonth(YearMonth.of(2026, 12));
+        inOrder.verify(partitionRepository).createMonth(YearMonth.of(2027, 1));
+        verifyNoMoreInteractions(ignoreStubs(partitionRepository));
+    }
+
+    @Test
+    void createFuturePartitions_whenAlreadyAhead_shouldCreateNothing() {
+
+        when(partitionRepository.findPartitions())
+                .thenReturn(List.of(partition("chat_messages_p2027_01", NOW.plusMonths(4))));
+
+        maintenance(0, MessagePartitionMaintenance.RetentionMode.DROP).createFuturePartitions(NOW);
+
+        verify(partitionRepository, never()).createMonth(any());
+    }
+
+    @Test
+    void retireExpiredPartitions_shouldKeepTheCurrentMonthAndTheRetainedOnes() {
+
+        when(partitionRepository.findPartitions())
+                .thenReturn(List.of(
+                        partition("chat_messages_legacy", YearMonth.of(2026, 4)),
+                        partition("chat_messages_p2026_04", YearMonth.of(2026, 5)),
+                        partition("chat_messages_p2026_05", YearMonth.of(2026, 6))));
+
+        maintenance(5, MessagePartitionMaintenance.RetentionMode.DROP).retireExpiredPartitions(NOW);
+
+        verify(partitionRepository).drop("chat_messages_legacy");
+        verify(partitionRepository).drop("chat_messages_p2026_04");
+        verify(partitionRepository, never()).drop("chat_messages_p2026_05");
+        assertEquals(2, meterRegistry.counter("chat.messages.partitions.retired", "mode", "drop").count());
+    }
+
+    @Test
+    void retireExpiredPartitions_archiveMode_shouldDetachIntoArchiveTables() {
+
+        when(partitionRepository.findPartitions())
+                .thenReturn(List.of(
+                        partition("chat_messages_p2026_04", YearMonth.of(2026, 5)),
+                        partition("chat_messages_p2026_10", YearMonth.of(2026, 11))));
+        when(partitionRepository.detach(any(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+
+        maintenance(3, MessagePartitionMaintenance.RetentionMode.ARCHIVE).retireExpiredPartitions(NOW);
+
+        verify(partitionRepository).detach("chat_messages_p2026_04", "chat_messages_archive_p2026_04", "cold");
+        verify(partitionRepository, times(1)).detach(any(), any(), any());
+        verify(partitionRepository, never()).drop(any());
+    }
+
+    @Test
+    void releaseRetiredReferences_shouldDeleteReferencesBeforeTheOldestPartitionInBatches() {
+
+        Instant retainedFrom = MessagePartitionRepository.start(YearMonth.of(2026, 5));
+        when(partitionRepository.findRetainedFrom())
+                .thenReturn(retainedFrom);
+        when(chunkRepository.deleteReferencesBefore(retainedFrom, 10_000))
+                .thenReturn(10_000, 10_000, 42);
+
+        maintenance(5, MessagePartitionMaintenance.RetentionMode.DROP).releaseRetiredReferences();
+
+        verify(chunkRepository, times(3)).deleteReferencesBefore(retainedFrom, 10_000);
+    }
+
+    @Test
+    void releaseRetiredReferences_whileTheLegacyPartitionIsKept_shouldDeleteNothing() {
+
+        when(partitionRepository.findRetainedFrom())
+                .thenReturn(null);
+
+        maintenance(5, MessagePartitionMaintenance.RetentionMode.DROP).releaseRetiredReferences();
+
+        verifyNoInteractions(chunkRepository);
+    }
+
+    private MessagePartitionMaintenance maintenance(int retentionMonths,
+                                                    MessagePartitionMaintenance.RetentionMode mode) {
+        return new MessagePartitionMaintenance(partitionRepository, chunkRepository, transactionManager, 3,
+                retentionMonths, mode, "cold", "5s", meterRegistry);
+    }
+
+    private static Partition partition(String name, YearMonth upperBound) {
+        return new Partition(name, MessagePartitionRepository.start(upperBound));
+    }
+}
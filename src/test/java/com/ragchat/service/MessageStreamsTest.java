@@ -0,0 +1,111 @@
+package com.ragchat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageStreamsTest {
+
+    private final MessageStreams streams = new MessageStreams(2, Duration.ofMinutes(2), new SimpleMeterRegistry());
+    private final UUID sessionId = UUID.randomUUID();
+
+    @Test
+    void shouldNumberDeltasAndCoalesceContent() {
+
+        UUID id = streams.open(sessionId, "Ram", "ASSISTANT").id();
+        List<MessageStreams.Delta> published = new ArrayList<>();
+
+        streams.append(sessionId, id, "Hel", published::add);
+        streams.append(sessionId, id, "lo", published::add);
+
+        assertEquals(List.of(1, 2), published.stream().map(MessageStreams.Delta::seq).toList());
+        assertEquals("Hello", streams.openIn(sessionId).get(0).content());
+
+        MessageStreams.Snapshot closed = streams.complete(sessionId, id);
+        assertEquals("Hello", closed.content());
+        assertEquals(2, closed.seq());
+        assertThrows(ResourceNotFoundException.class, () -> streams.append(sessionId, id, "!", delta -> { }));
+    }
+
+    @Test
+    void shouldRejectContentBeyondColumnLength() {
+
+        UUID id = streams.open(sessionId, "Ram", "ASSISTANT").id();
+        streams.append(sessionId, id, "a".repeat(MessageStreams.MAX_CONTENT_LENGTH), delta -> { });
+
+        assertThrows(InvalidRequestException.class, () -> streams.append(sessionId, id, "b", delta -> { }));
+        assertEquals(MessageStreams.MAX_CONTENT_LENGTH, streams.openIn(sessionId).get(0).content().length());
+    }
+
+    @Test
+    void shouldKeepBlankStreamOpenOnClose() {
+
+        UUID id = streams.open(sessionId, "Ram", "ASSISTANT").id();
+
+        assertThrows(InvalidRequestException.class, () -> streams.complete(sessionId, id));
+        assertEquals(1, streams.openIn(sessionId).size());
+        assertTrue(streams.discard(sessionId, id));
+        assertFalse(streams.discard(sessionId, id));
+    }
+
+    @Test
+    void shouldKeepCompletingStreamUntilCommitAndReopenOnRollback() {
+
+        UUID id = streams.open(sessionId, "Ram", "ASSISTANT").id();
+        streams.append(sessionId, id, "Hello", delta -> { });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            streams.complete(sessionId, id);
+
+            assertThrows(ResourceNotFoundException.class, () -> streams.append(sessionId, id, "!", delta -> { }));
+            assertThrows(ResourceNotFoundException.class, () -> streams.complete(sessionId, id));
+            assertFalse(streams.discard(sessionId, id));
+            assertEquals(1, streams.openIn(sessionId).size());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals("Hello", streams.complete(sessionId, id).content());
+        assertTrue(streams.openIn(sessionId).isEmpty());
+    }
+
+    @Test
+    void shouldNotServeStreamOfAnotherSession() {
+
+        UUID id = streams.open(sessionId, "Ram", "ASSISTANT").id();
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> streams.append(UUID.randomUUID(), id, "x", delta -> { }));
+    }
+
+    @Test
+    void shouldCapOpenStreams() {
+
+        streams.open(sessionId, "Ram", "ASSISTANT");
+        streams.open(sessionId, "Ram", "ASSISTANT");
+
+        assertThrows(TooManyStreamsException.class, () -> streams.open(sessionId, "Ram", "ASSISTANT"));
+    }
+
+    @Test
+    void shouldReportStreamsWithoutRecentDeltasAsIdle() {
+
+        MessageStreams expiring = new MessageStreams(2, Duration.ZERO, new SimpleMeterRegistry());
+        UUID id = expiring.open(sessionId, "Ram", "ASSISTANT").id();
+
+        assertEquals(id, expiring.idle().get(0).id());
+        assertTrue(streams.idle().isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class MessageWriteBehindQueueTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private RecentMessagesBuffer recentMessages;
+
+    @Mock
+    private ContextChunkStore contextChunkStore;
+
+    @Mock
+    private VersionRegistry versionRegistry;
+
+    @Mock
+    private SessionEvents sessionEvents;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new MessageWriteBehindQueue(true, 2, 10, Duration.ofMillis(10),
+                sessionRepository, messageRepository, recentMessages, contextChunkStore, versionRegistry,
+                sessionEvents, transactionManager, meterRegistry);
+    }
+
+    @Test
+    void submit_whenNotStarted_shouldReject() {
+
+        assertFalse(queue.submit(pending(UUID.randomUUID())));
+        assertEquals(1.0, meterRegistry.get("chat.writebehind.rejected").counter().count());
+    }
+
+    @Test
+    void submit_whenQueueFull_shouldReject() {
+
+        queue.start();
+        try {
+            // The writer may already be draining, so only assert that the bound is eventually hit
+            boolean rejected = false;
+            for (int i = 0; i < 1000 && !rejected; i++) {
+                rejected = !queue.submit(pending(UUID.randomUUID()));
+            }
+            assertTrue(rejected);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void flush_whenBatchFails_shouldRetryMessagesIndividually() {
+
+        UUID session = UUID.randomUUID();
+        UUID deletedSession = UUID.randomUUID();
+
+        when(messageRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("fk"))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("fk"));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        queue.flush(List.of(pending(session), pending(deletedSession)));
+
+        verify(messageRepository, times(3)).saveAll(anyList());
+        verify(recentMessages).append(eq(session), any());
+        verify(recentMessages, never()).append(eq(deletedSession), any());
+        verify(sessionEvents, never()).publishAfterCommit(eq(deletedSession), any(), any());
+        assertEquals(1.0, meterRegistry.get("chat.writebehind.failed").counter().count());
+    }
+
+    @Test
+    void flush_shouldPersistWholeBatchWithAssignedIdsStampedInOrder() {
+
+        UUID session = UUID.randomUUID();
+        OffsetDateTime accepted = OffsetDateTime.now();
+        MessageWriteBehindQueue.PendingMessage first = pending(session);
+        MessageWriteBehindQueue.PendingMessage second = pending(session);
+
+        when(messageRepository.saveAll(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.recordMessages(any(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+
+        queue.flush(List.of(first, second));
+
+        verify(messageRepository).saveAll(argThat((List<ChatMessage> messages) ->
+                messages.size() == 2
+                        && messages.get(0).getId().equals(first.id())
+                        && messages.get(1).getId().equals(second.id())
+                        && !messages.get(0).getCreatedAt().isBefore(accepted)
+                        && messages.get(0).getCreatedAt().isBefore(messages.get(1).getCreatedAt())));
+        verify(sessionRepository).recordMessages(eq(session), eq(2), any(), eq("USER"), eq("hello"));
+        verify(recentMessages, times(2)).append(eq(session), any());
+        verify(versionRegistry, times(2)).recordWrite("Ram", session);
+        verify(sessionEvents, times(2)).publishAfterCommit(eq(session), eq(SessionEvents.MESSAGE_CREATED), any());
+    }
+
+    private MessageWriteBehindQueue.PendingMessage pending(UUID sessionId) {
+        return new MessageWriteBehindQueue.PendingMessage(
+                UUID.randomUUID(), sessionId, "Ram", "USER", "hello", null);
+    }
+}
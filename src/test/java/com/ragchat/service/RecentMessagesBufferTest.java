@@ -0,0 +1,189 @@
+package com.ragchat.service;
+
+import com.ragchat.api.dto.ChatMessageResponse;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class RecentMessagesBufferTest {
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    private final VersionRegistry versionRegistry = new VersionRegistry(Duration.ofMinutes(5), 1000);
+
+    private RecentMessagesBuffer buffer;
+
+    private final OffsetDateTime start = OffsetDateTime.now();
+    private final OffsetDateTime since = start.minusDays(1);
+
+    @BeforeEach
+    void setUp() {
+        buffer = buffer(versionRegistry);
+    }
+
+    private RecentMessagesBuffer buffer(VersionRegistry versions) {
+        return new RecentMessagesBuffer(messageRepository, sessionRepository, versions, 3, 1, Duration.ofMinutes(5),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void tail_onMiss_shouldLoadNewestFromDatabaseInChronologicalOrder() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        messageCount(sessionId, 3);
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("c", 2), message("b", 1), message("a", 0)));
+
+        List<ChatMessageResponse> tail = buffer.tail(sessionId, since, 2);
+        buffer.tail(sessionId, since, 3);
+
+        assertEquals(List.of("b", "c"), contents(tail));
+        verify(messageRepository, times(1)).findNewest(eq(sessionId), eq(since), any());
+        // Nothing was written since the fill, so the second read did not look up the count
+        verify(sessionRepository, times(1)).findMessageCount(sessionId);
+    }
+
+    @Test
+    void tail_afterLocalWrite_shouldCheckCountOnce() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        when(sessionRepository.findMessageCount(sessionId)).thenReturn(Optional.of(3L), Optional.of(4L));
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("c", 2), message("b", 1), message("a", 0)));
+
+        buffer.tail(sessionId, since, 3);
+        buffer.append(sessionId, message("d", 3));
+        versionRegistry.recordWrite("Ram", sessionId);
+        buffer.tail(sessionId, since, 3);
+
+        assertEquals(List.of("b", "c", "d"), contents(buffer.tail(sessionId, since, 3)));
+        verify(sessionRepository, times(2)).findMessageCount(sessionId);
+        verify(messageRepository, times(1)).findNewest(eq(sessionId), eq(since), any());
+    }
+
+    @Test
+    void append_shouldKeepOnlyNewestMessagesUpToCapacity() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        messageCount(sessionId, 3);
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("c", 2), message("b", 1), message("a", 0)));
+
+        buffer.tail(sessionId, since, 3);
+        buffer.append(sessionId, message("d", 3));
+
+        assertEquals(List.of("b", "c", "d"), contents(buffer.tail(sessionId, since, 3)));
+    }
+
+    @Test
+    void append_withoutBuffer_shouldNotCreatePartialBuffer() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        buffer.append(sessionId, message("late", 5));
+
+        messageCount(sessionId, 2);
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("late", 5), message("early", 4)));
+
+        assertEquals(List.of("early", "late"), contents(buffer.tail(sessionId, since, 3)));
+    }
+
+    @Test
+    void append_shouldDropContext() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        messageCount(sessionId, 0);
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of());
+
+        buffer.tail(sessionId, since, 3);
+        ChatMessageResponse withContext = message("answer", 1);
+        withContext.setContext("{\"docs\":[]}");
+        buffer.append(sessionId, withContext);
+
+        assertNull(buffer.tail(sessionId, since, 1).get(0).getContext());
+    }
+
+    @Test
+    void tail_whenAnotherInstanceAppended_shouldRefillOnceTheVersionExpires() {
+
+        UUID sessionId = UUID.randomUUID();
+        // Versions expire at once, as they do etag.version-ttl after the last local write
+        buffer = buffer(new VersionRegistry(Duration.ZERO, 1000));
+
+        when(sessionRepository.findMessageCount(sessionId)).thenReturn(Optional.of(2L), Optional.of(3L));
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("b", 1), message("a", 0)))
+                .thenReturn(List.of(message("c", 2), message("b", 1), message("a", 0)));
+
+        buffer.tail(sessionId, since, 3);
+
+        assertEquals(List.of("a", "b", "c"), contents(buffer.tail(sessionId, since, 3)));
+        verify(messageRepository, times(2)).findNewest(eq(sessionId), eq(since), any());
+    }
+
+    @Test
+    void tail_whenCountLagsBehindLocalAppends_shouldServeBuffer() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        // A lagging replica still reports the count from before the append
+        messageCount(sessionId, 1);
+        when(messageRepository.findNewest(eq(sessionId), eq(since), any()))
+                .thenReturn(List.of(message("a", 0)));
+
+        buffer.tail(sessionId, since, 3);
+        buffer.append(sessionId, message("b", 1));
+        versionRegistry.recordWrite("Ram", sessionId);
+
+        assertEquals(List.of("a", "b"), contents(buffer.tail(sessionId, since, 3)));
+        verify(sessionRepository, times(2)).findMessageCount(sessionId);
+        verify(messageRepository, times(1)).findNewest(eq(sessionId), eq(since), any());
+    }
+
+    @Test
+    void tail_whenSessionDeleted_shouldThrowNotFound() {
+
+        UUID sessionId = UUID.randomUUID();
+
+        when(sessionRepository.findMessageCount(sessionId)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> buffer.tail(sessionId, since, 3));
+        verifyNoInteractions(messageRepository);
+    }
+
+    private void messageCount(UUID sessionId, long count) {
+        when(sessionRepository.findMessageCount(sessionId)).thenReturn(Optional.of(count));
+    }
+
+    private ChatMessageResponse message(String content, int secondsAfterStart) {
+        return new ChatMessageResponse(UUID.randomUUID(), "USER", content, start.plusSeconds(secondsAfterStart));
+    }
+
+    private static List<String> contents(List<ChatMessageResponse> messages) {
+        return messages.stream().map(ChatMessageResponse::getContent).toList();
+    }
+}
@@ -0,0 +1,70 @@
+package com.ragchat.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaLagGuardTest {
+
+    @BeforeEach
+    void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void completeTransaction() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void shouldPinReadsOfRecentWriterToPrimaryUntilTransactionCompletes() {
+
+        ReplicaLagGuard guard = new ReplicaLagGuard("jdbc:postgresql://replica/rag_chat", Duration.ofSeconds(5), 100);
+        UUID sessionId = UUID.randomUUID();
+
+        guard.recordWrite("Ram", sessionId);
+        guard.beforeRead(null, sessionId);
+
+        assertTrue(ReplicaLagGuard.isPinnedToPrimary());
+
+        completeTransaction();
+        beginTransaction();
+
+        assertFalse(ReplicaLagGuard.isPinnedToPrimary());
+
+        guard.beforeRead("Ram", null);
+
+        assertTrue(ReplicaLagGuard.isPinnedToPrimary());
+    }
+
+    @Test
+    void shouldReadFromReplicaForOtherUsersAndSessions() {
+
+        ReplicaLagGuard guard = new ReplicaLagGuard("jdbc:postgresql://replica/rag_chat", Duration.ofSeconds(5), 100);
+
+        guard.recordWrite("Ram", UUID.randomUUID());
+        guard.beforeRead("Sita", UUID.randomUUID());
+
+        assertFalse(ReplicaLagGuard.isPinnedToPrimary());
+    }
+
+    @Test
+    void shouldDoNothingWithoutReplica() {
+
+        ReplicaLagGuard guard = new ReplicaLagGuard("", Duration.ofSeconds(5), 100);
+
+        guard.recordWrite("Ram", null);
+        guard.beforeRead("Ram", null);
+
+        assertFalse(ReplicaLagGuard.isPinnedToPrimary());
+    }
+}
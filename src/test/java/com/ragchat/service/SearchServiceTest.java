@@ -0,0 +1,101 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.SearchHitView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class SearchServiceTest {
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+
+    @InjectMocks
+    private SearchService searchService;
+
+    @Test
+    void search_shouldReturnNextCursorWhenMoreHitsExist() {
+
+        List<SearchHitView> rows = List.of(hit(0.5f), hit(0.4f), hit(0.3f));
+
+        when(messageRepository.search("Ram", "vector", 3))
+                .thenReturn(rows);
+
+        var result = searchService.search("Ram", "vector", null, 2);
+
+        assertEquals(2, result.getContent().size());
+        SearchCursor next = SearchCursor.decode(result.getNextCursor());
+        assertEquals(0.4f, next.rank());
+        assertEquals(rows.get(1).getId(), next.id());
+    }
+
+    @Test
+    void search_withCursor_shouldResumeAfterRankAndId() {
+
+        UUID id = UUID.randomUUID();
+        String cursor = new SearchCursor(0.0607927f, id).encode();
+
+        when(messageRepository.searchAfter("Ram", "vector", 0.0607927f, id, SearchService.DEFAULT_PAGE_SIZE + 1))
+                .thenReturn(List.of(hit(0.05f)));
+
+        var result = searchService.search("Ram", "vector", cursor, null);
+
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void search_whenQueryBlank_shouldThrow() {
+
+        assertThrows(InvalidRequestException.class, () ->
+                searchService.search("Ram", "  ", null, null));
+
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void search_whenQueryTooLongOrCursorInvalid_shouldThrowBeforeLagBookkeeping() {
+
+        String longQuery = "x".repeat(SearchService.MAX_QUERY_LENGTH + 1);
+
+        assertThrows(InvalidRequestException.class, () ->
+                searchService.search("Ram", longQuery, null, null));
+        assertThrows(InvalidRequestException.class, () ->
+                searchService.search("Ram", "vector", "not a cursor", null));
+
+        verifyNoInteractions(replicaLagGuard, messageRepository);
+    }
+
+    @Test
+    void highlight_shouldEscapeContentBeforeMarkingMatches() {
+
+        String snippet = "<b>x</b> \u0002vector\u0003 & more";
+
+        assertEquals("&lt;b&gt;x&lt;/b&gt; <mark>vector</mark> &amp; more", SearchService.highlight(snippet));
+    }
+
+    private SearchHitView hit(float rank) {
+        UUID id = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        return new SearchHitView() {
+            public String getType() { return "MESSAGE"; }
+            public UUID getId() { return id; }
+            public UUID getSessionId() { return sessionId; }
+            public String getSessionTitle() { return "Title"; }
+            public Instant getCreatedAt() { return Instant.now(); }
+            public float getRank() { return rank; }
+            public String getSnippet() { return "\u0002vector\u0003 search"; }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package com.ragchat.service;
+
+import com.ragchat.domain.ChatSession;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class SessionCacheTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    private SessionCache sessionCache;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache = new SessionCache(sessionRepository, 100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void require_shouldLoadOnceAndServeHitsFromMemory() {
+
+        ChatSession session = session();
+
+        when(sessionRepository.findById(session.getId()))
+                .thenReturn(Optional.of(session));
+
+        SessionMetadata first = sessionCache.require(session.getId());
+        SessionMetadata second = sessionCache.require(session.getId());
+
+        assertEquals("Ram", first.userId());
+        assertSame(first, second);
+        verify(sessionRepository, times(1)).findById(session.getId());
+        assertEquals(1, sessionCache.stats().hitCount());
+        assertEquals(1, sessionCache.stats().missCount());
+    }
+
+    @Test
+    void require_whenMissing_shouldThrowAndNotCache() {
+
+        UUID id = UUID.randomUUID();
+
+        when(sessionRepository.findById(id))
+                .thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> sessionCache.require(id));
+        assertThrows(ResourceNotFoundException.class, () -> sessionCache.require(id));
+
+        assertFalse(sessionCache.contains(id));
+        verify(sessionRepository, times(2)).findById(id);
+    }
+
+    @Test
+    void evict_shouldForceReload() {
+
+        ChatSession session = session();
+        sessionCache.put(session);
+
+        assertTrue(sessionCache.contains(session.getId()));
+
+        sessionCache.evict(session.getId());
+
+        assertFalse(sessionCache.contains(session.getId()));
+    }
+
+    @Test
+    void put_insideTransaction_shouldWaitForCommit() {
+
+        ChatSession session = session();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sessionCache.put(session);
+
+            assertFalse(sessionCache.contains(session.getId()));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            assertTrue(sessionCache.contains(session.getId()));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static ChatSession session() {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("Ram");
+        session.setTitle("title");
+        return session;
+    }
+}
@@ -0,0 +1,190 @@
+package com.ragchat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionEventsTest {
+
+    private final ManualSenders senders = new ManualSenders();
+    private final SessionEvents events = new SessionEvents(2, 2, senders, new SimpleMeterRegistry());
+    private final UUID sessionId = UUID.randomUUID();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldDeliverToSubscribersOfTheSessionOnly() {
+
+        List<SessionEvents.Event> received = new ArrayList<>();
+        Runnable unsubscribe = subscribe(received::add);
+
+        events.publish(sessionId, SessionEvents.MESSAGE_CREATED, "m1");
+        events.publish(UUID.randomUUID(), SessionEvents.MESSAGE_CREATED, "other");
+        send();
+        unsubscribe.run();
+        events.publish(sessionId, SessionEvents.MESSAGE_CREATED, "m2");
+        send();
+
+        assertEquals(List.of(new SessionEvents.Event(SessionEvents.MESSAGE_CREATED, "m1")), received);
+    }
+
+    @Test
+    void shouldDropSubscriberThatFails() {
+
+        List<SessionEvents.Event> received = new ArrayList<>();
+        subscribe(event -> {
+            throw new IllegalStateException("disconnected");
+        });
+        subscribe(received::add);
+
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d1");
+        send();
+        // The failed subscriber no longer counts against the cap
+        subscribe(event -> { });
+
+        assertEquals(1, received.size());
+        assertThrows(TooManyStreamsException.class, () -> subscribe(event -> { }));
+    }
+
+    @Test
+    void shouldPublishAfterCommitOnly() {
+
+        List<SessionEvents.Event> received = new ArrayList<>();
+        subscribe(received::add);
+
+        TransactionSynchronizationManager.initSynchronization();
+        events.publishAfterCommit(sessionId, SessionEvents.STREAM_COMPLETED, "m1");
+        send();
+
+        assertTrue(received.isEmpty());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        send();
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void shouldQueueReplayAheadOfLaterEvents() {
+
+        List<SessionEvents.Event> received = new ArrayList<>();
+        SessionEvents.Event started = new SessionEvents.Event(SessionEvents.STREAM_STARTED, "s1");
+        events.subscribe(sessionId, received::add, () -> { }, () -> List.of(started));
+
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d1");
+        send();
+
+        assertEquals(List.of(started, new SessionEvents.Event(SessionEvents.STREAM_DELTA, "d1")), received);
+    }
+
+    @Test
+    void publish_whenSubscriberFallsBehind_shouldDropItWithoutBlocking() {
+
+        List<SessionEvents.Event> slow = new ArrayList<>();
+        List<SessionEvents.Event> fast = new ArrayList<>();
+        AtomicInteger dropped = new AtomicInteger();
+        events.subscribe(sessionId, slow::add, dropped::incrementAndGet, List::of);
+
+        // The slow subscriber's sender never gets to run while three events arrive
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d1");
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d2");
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d3");
+        subscribe(fast::add);
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d4");
+        send();
+
+        assertTrue(slow.isEmpty());
+        assertEquals(1, dropped.get());
+        assertEquals(1, fast.size());
+    }
+
+    @Test
+    void close_shouldCompleteSubscribersAndIgnoreLaterEvents() {
+
+        List<SessionEvents.Event> received = new ArrayList<>();
+        AtomicInteger completed = new AtomicInteger();
+        events.subscribe(sessionId, received::add, completed::incrementAndGet, List::of);
+
+        events.close();
+        events.publish(sessionId, SessionEvents.STREAM_DELTA, "d1");
+        send();
+
+        assertTrue(senders.isShutdown());
+        assertEquals(1, completed.get());
+        assertTrue(received.isEmpty());
+    }
+
+    private Runnable subscribe(Consumer<SessionEvents.Event> listener) {
+        return events.subscribe(sessionId, listener, () -> { }, List::of);
+    }
+
+    private void send() {
+        Runnable drain;
+        while ((drain = senders.queued.poll()) != null) {
+            drain.run();
+        }
+    }
+
+    // Senders run queued drains when the test says so, standing in for busy sender threads
+    private static final class ManualSenders extends AbstractExecutorService {
+
+        final Queue<Runnable> queued = new ArrayDeque<>();
+        boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("shut down");
+            }
+            queued.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(queued);
+            queued.clear();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && queued.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import com.ragchat.repository.DeletedSessionView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(org.mockito.junit.jupiter.MockitoExtension.class)
+class SessionPurgerTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SessionPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        purger = new SessionPurger(sessionRepository, messageRepository, transactionManager, 10, 100, 50,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void purgeBatch_shouldRemoveSessionsWhoseMessagesFitInTheBatch() {
+
+        DeletedSessionView small = deleted();
+        DeletedSessionView large = deleted();
+
+        when(sessionRepository.lockDeleted(10))
+                .thenReturn(List.of(small, large));
+        when(messageRepository.deleteBatch(eq(small.getId()), any(), eq(100)))
+                .thenReturn(30);
+        when(messageRepository.deleteBatch(eq(large.getId()), any(), eq(70)))
+                .thenReturn(70);
+
+        boolean more = purger.purgeBatch();
+
+        assertTrue(more);
+        verify(sessionRepository).purge(small.getId());
+        // The large session still has messages: it stays tombstoned for the next batch
+        verify(sessionRepository, never()).purge(large.getId());
+    }
+
+    @Test
+    void purgeBatch_shouldBoundMessagesFromTheSessionsCreation() {
+
+        DeletedSessionView session = deleted();
+
+        when(sessionRepository.lockDeleted(10))
+                .thenReturn(List.of(session));
+
+        boolean more = purger.purgeBatch();
+
+        assertFalse(more);
+        verify(messageRepository).deleteBatch(session.getId(),
+                session.getCreatedAt().minus(ChatService.CLOCK_SKEW_SLACK), 100);
+        verify(sessionRepository).purge(session.getId());
+    }
+
+    @Test
+    void run_shouldStopOnceNoTombstoneIsLeft() {
+
+        when(sessionRepository.lockDeleted(10))
+                .thenReturn(List.of());
+
+        purger.run();
+
+        verify(sessionRepository, times(1)).lockDeleted(10);
+        verifyNoInteractions(messageRepository);
+    }
+
+    private static DeletedSessionView deleted() {
+        UUID id = UUID.randomUUID();
+        Instant createdAt = Instant.parse("2026-05-10T12:00:00Z");
+        DeletedSessionView view = mock(DeletedSessionView.class);
+        lenient().when(view.getId()).thenReturn(id);
+        lenient().when(view.getCreatedAt()).thenReturn(createdAt);
+        return view;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ragchat.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionRegistryTest {
+
+    private final VersionRegistry registry = new VersionRegistry(Duration.ofSeconds(30), 1000);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldKeepTagUntilWriteCommits() {
+
+        UUID sessionId = UUID.randomUUID();
+        String before = registry.messagesTag(sessionId, 0, 20);
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.recordWrite("Ram", sessionId);
+
+        assertEquals(before, registry.messagesTag(sessionId, 0, 20));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertNotEquals(before, registry.messagesTag(sessionId, 0, 20));
+    }
+
+    @Test
+    void shouldKeepTagWhenWriteRollsBack() {
+
+        String before = registry.sessionsTag("Ram");
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.recordWrite("Ram", null);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(before, registry.sessionsTag("Ram"));
+    }
+
+    @Test
+    void shouldTagEachUserAndQuerySeparately() {
+
+        assertEquals(registry.sessionsTag("Ram", 20, null), registry.sessionsTag("Ram", 20, null));
+        assertNotEquals(registry.sessionsTag("Ram", 20, null), registry.sessionsTag("Ram", 50, null));
+        assertNotEquals(registry.sessionsTag("Ram", 20, null), registry.sessionsTag("Sita", 20, null));
+    }
+
+    @Test
+    void shouldNotReissueTagAfterRestart() {
+
+        VersionRegistry restarted = new VersionRegistry(Duration.ofSeconds(30), 1000);
+
+        assertNotEquals(registry.sessionsTag("Ram"), restarted.sessionsTag("Ram"));
+    }
+}